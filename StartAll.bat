@@ -15,7 +15,7 @@ echo Using Spring Boot HTTP port: %SERVER_PORT%
 REM 1) Start server in a new window
 echo [1/3] Starting server window...
 REM Run server directly to avoid nested batch quirks
-start "shopping-server" cmd /c "cd /d server && where mvn >nul 2>&1 && mvn -q -DskipTests package && where java >nul 2>&1 && java -Xms512m -Xmx1024m -XX:+UseG1GC -jar target\shopping-server-1.0-SNAPSHOT.jar --server.port=%SERVER_PORT%"
+start "shopping-server" cmd /c "cd /d server && where mvn >nul 2>&1 && mvn -q -DskipTests package && where java >nul 2>&1 && java -Xms512m -Xmx1024m -XX:+UseG1GC -jar target\shopping-server-1.0-SNAPSHOT-exec.jar --server.port=%SERVER_PORT%"
 
 REM 2) Wait for server to be ready (Netty 8080 OR Spring Boot %SERVER_PORT%) max ~60s
 echo [2/3] Waiting for server (tcp 8080 or %SERVER_PORT%)...
@@ -47,9 +47,55 @@ CREATE TABLE IF NOT EXISTS orders (
     FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE SET NULL
 );
 
+-- 购物车表（socket 服务 jpa 模式，整车覆盖保存）
+CREATE TABLE IF NOT EXISTS cart_items (
+    id BIGINT PRIMARY KEY,
+    client_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    UNIQUE KEY uk_cart_client_product (client_id, product_id),
+    FOREIGN KEY (client_id) REFERENCES clients(client_id) ON DELETE CASCADE,
+    FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE
+);
+
+-- 订单头表（订单号由服务端分配，与 socket 协议中的 orderId 一致）
+CREATE TABLE IF NOT EXISTS order_headers (
+    id BIGINT PRIMARY KEY,
+    client_id BIGINT NOT NULL,
+    total_price DECIMAL(10,2) NOT NULL,
+    created_at DATETIME NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    FOREIGN KEY (client_id) REFERENCES clients(client_id)
+);
+
+-- 订单行表
+CREATE TABLE IF NOT EXISTS order_items (
+    id BIGINT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    price DECIMAL(10,2) NOT NULL,
+    FOREIGN KEY (order_id) REFERENCES order_headers(id) ON DELETE CASCADE,
+    FOREIGN KEY (product_id) REFERENCES products(product_id)
+);
+
+-- 号段表：MySQL 无序列，Hibernate 用单行表分配主键（每次取 50 个），订单行/购物车条目可批量插入
+CREATE TABLE IF NOT EXISTS order_item_seq (next_val BIGINT);
+INSERT INTO order_item_seq SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM order_item_seq);
+CREATE TABLE IF NOT EXISTS cart_item_seq (next_val BIGINT);
+INSERT INTO cart_item_seq SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM cart_item_seq);
+
 -- 添加索引
 CREATE INDEX idx_client_username ON clients(username);
 CREATE INDEX idx_product_name ON products(name);
+-- 商品列表按价格/库存排序的键集分页（排序键 + 主键）
+CREATE INDEX idx_products_price ON products(price, product_id);
+CREATE INDEX idx_products_stock ON products(stock, product_id);
+-- 名称+描述全文索引（ngram 分词，支持中文），供 searchProductsFullText 使用
+CREATE FULLTEXT INDEX ft_products_name_desc ON products(name, description) WITH PARSER ngram;
 CREATE INDEX idx_orders_status ON orders(status);
 CREATE INDEX idx_orders_client ON orders(client_id);
-CREATE INDEX idx_product_types_product ON product_types(product_id);
\ No newline at end of file
+CREATE INDEX idx_product_types_product ON product_types(product_id);
+-- 订单历史键集分页 (client_id, created_at, id)，同时覆盖按客户查询
+CREATE INDEX idx_order_headers_client_created ON order_headers(client_id, created_at, id);
+CREATE INDEX idx_order_items_order ON order_items(order_id);
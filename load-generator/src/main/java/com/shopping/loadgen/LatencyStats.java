@@ -0,0 +1,138 @@
+package com.shopping.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按请求类型的延迟与错误统计（I/O 线程并发记录，报告线程定期取区间直方图）。
+ * 每个请求记两个延迟：
+ * - 响应时间：从计划发送时刻算起（开环模式下包含因前一请求未完成而推迟发送的时间，即协调遗漏修正）；
+ * - 服务时间：从实际发送时刻算起。闭环模式下两者相同。
+ * 预热期间的数据在开始测量时丢弃。
+ */
+final class LatencyStats {
+    // 微秒，超过 10 分钟按 10 分钟计
+    private static final long MAX_US = TimeUnit.MINUTES.toMicros(10);
+
+    private final Operation[] ops = Operation.values();
+    private final Recorder[] response = new Recorder[ops.length];
+    private final Recorder[] service = new Recorder[ops.length];
+    private final Histogram[] totalResponse = new Histogram[ops.length];
+    private final Histogram[] totalService = new Histogram[ops.length];
+    // 报告线程复用的区间直方图
+    private final Histogram[] intervalResponse = new Histogram[ops.length];
+    private final Histogram[] intervalService = new Histogram[ops.length];
+    // "请求类型 错误码" -> 次数；错误码为 timeout / failed（success=false 且无 code）或服务端错误码
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder connectFailures = new LongAdder();
+    private volatile boolean measuring;
+
+    LatencyStats() {
+        for (int i = 0; i < ops.length; i++) {
+            response[i] = new Recorder(MAX_US, 3);
+            service[i] = new Recorder(MAX_US, 3);
+            totalResponse[i] = new Histogram(MAX_US, 3);
+            totalService[i] = new Histogram(MAX_US, 3);
+        }
+    }
+
+    void record(Operation op, long responseNanos, long serviceNanos) {
+        response[op.ordinal()].recordValue(clamp(responseNanos));
+        service[op.ordinal()].recordValue(clamp(serviceNanos));
+    }
+
+    void error(Operation op, String code) {
+        if (!measuring) return;
+        errors.computeIfAbsent(op.type() + " " + code, k -> new LongAdder()).increment();
+    }
+
+    void connectFailed() {
+        connectFailures.increment();
+    }
+
+    boolean isMeasuring() {
+        return measuring;
+    }
+
+    /** 预热结束：丢弃此前的区间数据，之后的区间计入总计 */
+    synchronized void startMeasuring() {
+        for (int i = 0; i < ops.length; i++) {
+            intervalResponse[i] = response[i].getIntervalHistogram(intervalResponse[i]);
+            intervalService[i] = service[i].getIntervalHistogram(intervalService[i]);
+        }
+        errors.clear();
+        measuring = true;
+    }
+
+    /**
+     * 取出上次调用以来的区间数据（测量期间计入总计）
+     * @param seconds 区间长度
+     * @return 一行进度：总吞吐与各类型 p50/p99
+     */
+    synchronized String interval(double seconds) {
+        long count = 0;
+        StringBuilder perOp = new StringBuilder();
+        for (int i = 0; i < ops.length; i++) {
+            intervalResponse[i] = response[i].getIntervalHistogram(intervalResponse[i]);
+            intervalService[i] = service[i].getIntervalHistogram(intervalService[i]);
+            Histogram h = intervalResponse[i];
+            if (measuring) {
+                totalResponse[i].add(h);
+                totalService[i].add(intervalService[i]);
+            }
+            if (h.getTotalCount() == 0) continue;
+            count += h.getTotalCount();
+            perOp.append(String.format("  %s p50=%s p99=%s", ops[i].type(), ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(99))));
+        }
+        return String.format("%8.0f req/s%s", count / seconds, perOp);
+    }
+
+    /**
+     * @param seconds 测量时长
+     * @param openLoop 是否开环（另列服务时间）
+     * @return 汇总报告
+     */
+    synchronized String summary(double seconds, boolean openLoop) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-14s %10s %10s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "req/s", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        Histogram all = new Histogram(MAX_US, 3);
+        for (int i = 0; i < ops.length; i++) {
+            if (totalResponse[i].getTotalCount() == 0) continue;
+            all.add(totalResponse[i]);
+            sb.append(row(ops[i].type(), totalResponse[i], seconds));
+        }
+        sb.append(row("all", all, seconds));
+        if (openLoop) {
+            sb.append(String.format("%nservice time (from actual send, without coordinated-omission correction):%n"));
+            for (int i = 0; i < ops.length; i++) {
+                if (totalService[i].getTotalCount() > 0) sb.append(row(ops[i].type(), totalService[i], seconds));
+            }
+        }
+        sb.append(String.format("%nerrors:%n"));
+        if (errors.isEmpty()) sb.append("  none").append(System.lineSeparator());
+        new TreeMap<>(errors).forEach((k, v) -> sb.append(String.format("  %-24s %d%n", k, v.sum())));
+        if (connectFailures.sum() > 0) sb.append(String.format("  connect failures         %d%n", connectFailures.sum()));
+        return sb.toString();
+    }
+
+    private static String row(String name, Histogram h, double seconds) {
+        return String.format("%-14s %10d %10.0f %9s %9s %9s %9s %9s %9s%n", name, h.getTotalCount(), h.getTotalCount() / seconds,
+                ms(Math.round(h.getMean())), ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(90)),
+                ms(h.getValueAtPercentile(99)), ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+    }
+
+    private static String ms(long micros) {
+        return String.format("%.2fms", micros / 1000.0);
+    }
+
+    private static long clamp(long nanos) {
+        return Math.min(MAX_US, Math.max(0, nanos / 1000));
+    }
+}
@@ -0,0 +1,223 @@
+package com.shopping.loadgen;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.json.JsonObjectDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个模拟客户端：建连后注册并登录，之后按配置的比例循环发送请求，同一时刻只有一个未完成请求
+ * （服务端响应不带请求ID，只能按顺序对应）。
+ * 所有状态只在固定的一个事件循环上访问；超时或断线后在同一事件循环上重连，继续发送。
+ */
+@ChannelHandler.Sharable // 同一时刻只挂在一个连接上，重连时复用
+final class LoadConnection extends SimpleChannelInboundHandler<String> {
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private enum Phase { CONNECTING, REGISTER, LOGIN, RUNNING }
+
+    private final String username;
+    private final LoadOptions options;
+    private final LatencyStats stats;
+    private final LoadGenerator driver;
+    private final EventLoop loop;
+    private final Bootstrap bootstrap;
+    private final long interval;
+
+    private Channel channel;
+    private Phase phase = Phase.CONNECTING;
+    private boolean loggedIn;
+    // 当前未完成的请求（仅 RUNNING 阶段）
+    private Operation current;
+    private long intendedAt;
+    private long sentAt;
+    private long seq;
+    private long nextIntended;
+    private ScheduledFuture<?> timeout;
+
+    LoadConnection(int index, LoadOptions options, LatencyStats stats, LoadGenerator driver, Bootstrap base, EventLoop loop) {
+        this.username = options.username(index);
+        this.options = options;
+        this.stats = stats;
+        this.driver = driver;
+        this.loop = loop;
+        this.interval = options.intervalNanos();
+        LoadConnection self = this;
+        this.bootstrap = base.clone(loop).handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                // 与 Qt 客户端相同的协议：一行一个 JSON 对象
+                ch.pipeline().addLast(new JsonObjectDecoder(), new StringDecoder(StandardCharsets.UTF_8), self);
+            }
+        });
+    }
+
+    /** 建连（完成后返回的 future 结束，无论成功与否） */
+    ChannelFuture connect() {
+        phase = Phase.CONNECTING;
+        ChannelFuture f = bootstrap.connect(options.host, options.port);
+        f.addListener((ChannelFuture cf) -> {
+            if (!cf.isSuccess()) {
+                stats.connectFailed();
+                if (driver.running()) loop.schedule(this::connect, RECONNECT_DELAY_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            channel = cf.channel();
+            // 用户已存在时注册失败，不影响随后的登录
+            phase = Phase.REGISTER;
+            write("{\"type\":\"register\",\"username\":\"" + username + "\",\"password\":\"" + LoadOptions.PASSWORD + "\"}\n");
+            armTimeout();
+        });
+        return f;
+    }
+
+    void close() {
+        loop.execute(() -> {
+            Channel ch = channel;
+            channel = null;
+            if (ch != null) ch.close();
+        });
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, String msg) throws IOException {
+        if (ctx.channel() != channel) return;
+        String type = null;
+        String code = null;
+        Boolean success = null;
+        try (JsonParser p = JSON.createParser(msg)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.getCurrentName();
+                JsonToken value = p.nextToken();
+                if ("type".equals(name)) type = p.getText();
+                else if ("code".equals(name)) code = p.getText();
+                else if ("success".equals(name)) success = value == JsonToken.VALUE_TRUE;
+                else p.skipChildren();
+            }
+        }
+        switch (phase) {
+            case REGISTER:
+                if ("register_response".equals(type) || "error".equals(type)) {
+                    phase = Phase.LOGIN;
+                    write(Operation.LOGIN.request(options, username, ++seq));
+                    armTimeout();
+                }
+                break;
+            case LOGIN:
+                if (!Operation.LOGIN.isTerminal(type)) break;
+                cancelTimeout();
+                if (!Boolean.TRUE.equals(success)) {
+                    stats.error(Operation.LOGIN, code != null ? code : "failed");
+                    reconnectLater();
+                    break;
+                }
+                phase = Phase.RUNNING;
+                if (!loggedIn) {
+                    loggedIn = true;
+                    driver.loggedIn();
+                    // 开环：各连接的首个发送时刻在一个间隔内随机错开，避免同时发出
+                    nextIntended = System.nanoTime() + (interval > 0 ? ThreadLocalRandom.current().nextLong(interval) : 0);
+                }
+                scheduleNext();
+                break;
+            case RUNNING:
+                if (current == null || !current.isTerminal(type)) break;
+                cancelTimeout();
+                long now = System.nanoTime();
+                stats.record(current, now - intendedAt, now - sentAt);
+                if (code != null) stats.error(current, code);
+                else if (Boolean.FALSE.equals(success)) stats.error(current, "failed");
+                current = null;
+                scheduleNext();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (ctx.channel() != channel) return;
+        if (current != null) stats.error(current, "disconnected");
+        reconnectLater();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        ctx.close();
+    }
+
+    private void scheduleNext() {
+        if (!driver.running() || channel == null) return;
+        if (interval <= 0) {
+            send();
+            return;
+        }
+        long delay = nextIntended - System.nanoTime();
+        if (delay <= 0) send(); else loop.schedule(this::send, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void send() {
+        if (!driver.running() || channel == null || phase != Phase.RUNNING || current != null) return;
+        current = options.pick();
+        long now = System.nanoTime();
+        // 开环：延迟从计划时刻算起，发送被推迟的时间也计入（协调遗漏修正）
+        intendedAt = interval > 0 ? nextIntended : now;
+        sentAt = now;
+        if (interval > 0) nextIntended += interval;
+        write(current.request(options, username, ++seq));
+        armTimeout();
+    }
+
+    private void write(String line) {
+        channel.writeAndFlush(ByteBufUtil.writeUtf8(channel.alloc(), line));
+    }
+
+    private void armTimeout() {
+        cancelTimeout();
+        long expected = seq;
+        Phase expectedPhase = phase;
+        timeout = loop.schedule(() -> {
+            if (seq != expected || phase != expectedPhase || channel == null) return;
+            // 响应不带请求ID，迟到的响应无法与下一请求区分：记为超时并重连
+            stats.error(current != null ? current : Operation.LOGIN, "timeout");
+            reconnectLater();
+        }, options.timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    private void reconnectLater() {
+        cancelTimeout();
+        current = null;
+        Channel old = channel;
+        channel = null;
+        phase = Phase.CONNECTING;
+        if (old != null) old.close();
+        if (driver.running()) loop.schedule(this::connect, RECONNECT_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+}
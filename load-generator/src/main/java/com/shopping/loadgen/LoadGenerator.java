@@ -0,0 +1,135 @@
+package com.shopping.loadgen;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * socket 服务端压测工具：模拟大量客户端连接，按比例发送登录、商品列表、搜索、加购、结算请求，
+ * 输出吞吐与按请求类型的延迟分位数（HdrHistogram）及错误统计。
+ *
+ * 闭环模式（默认）：每个连接收到响应后立即发下一条，吞吐由服务端决定；
+ * 开环模式（--rate）：按固定速率计划发送，延迟从计划时刻算起，服务端变慢时延迟如实上升而不是被发送推迟掩盖。
+ */
+public final class LoadGenerator {
+    private final LoadOptions options;
+    private final LatencyStats stats = new LatencyStats();
+    private final AtomicInteger loggedIn = new AtomicInteger();
+    private volatile boolean running = true;
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (String arg : args) {
+            if ("--help".equals(arg) || "-h".equals(arg)) {
+                System.out.println(LoadOptions.usage());
+                return;
+            }
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadOptions.usage());
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run();
+    }
+
+    boolean running() {
+        return running;
+    }
+
+    void loggedIn() {
+        loggedIn.incrementAndGet();
+    }
+
+    private void run() throws InterruptedException {
+        boolean openLoop = options.rate > 0;
+        System.out.printf("target %s:%d, %d connections, %s, warmup %ds, duration %ds, mix %s%n",
+                options.host, options.port, options.connections,
+                openLoop ? String.format("open loop %.0f req/s", options.rate) : "closed loop",
+                options.warmupSeconds, options.durationSeconds, options.mix);
+
+        EventLoopGroup group = new NioEventLoopGroup(Math.max(0, options.threads));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "load-report");
+            t.setDaemon(true);
+            return t;
+        });
+        List<LoadConnection> connections = new ArrayList<>(options.connections);
+        try {
+            Bootstrap base = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .option(ChannelOption.TCP_NODELAY, true)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, options.timeoutMs);
+
+            // 建连：限制同时进行中的建连数，避免瞬间大量 SYN 被服务端 backlog 丢弃
+            long rampStart = System.nanoTime();
+            Semaphore permits = new Semaphore(options.connectConcurrency);
+            for (int i = 0; i < options.connections; i++) {
+                permits.acquire();
+                LoadConnection c = new LoadConnection(i, options, stats, this, base, group.next());
+                connections.add(c);
+                c.connect().addListener(f -> permits.release());
+            }
+            System.out.printf("started %d connections in %.1fs, %d logged in so far%n",
+                    options.connections, (System.nanoTime() - rampStart) / 1e9, loggedIn.get());
+
+            // 预热：数据在开始测量时丢弃
+            long[] last = {System.nanoTime()};
+            Runnable report = () -> {
+                long now = System.nanoTime();
+                String line = stats.interval((now - last[0]) / 1e9);
+                last[0] = now;
+                System.out.printf("[%s] %s%n", stats.isMeasuring() ? "run   " : "warmup", line);
+            };
+            long reportMs = TimeUnit.SECONDS.toMillis(Math.max(1, options.reportIntervalSeconds));
+            ScheduledFuture<?> task = reporter.scheduleAtFixedRate(report, reportMs, reportMs, TimeUnit.MILLISECONDS);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds));
+
+            task.cancel(false);
+            reporter.submit(() -> {
+                stats.startMeasuring();
+                last[0] = System.nanoTime();
+            }).get();
+            long measureStart = last[0];
+            task = reporter.scheduleAtFixedRate(report, reportMs, reportMs, TimeUnit.MILLISECONDS);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+
+            running = false;
+            task.cancel(false);
+            // 最后一个不完整的区间也计入总计
+            double seconds = reporter.submit(() -> {
+                report.run();
+                return (last[0] - measureStart) / 1e9;
+            }).get();
+            System.out.printf("%nmeasured %.1fs, %d connections logged in%n%n", seconds, loggedIn.get());
+            System.out.print(stats.summary(seconds, openLoop));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            running = false;
+            connections.forEach(LoadConnection::close);
+            reporter.shutdownNow();
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+}
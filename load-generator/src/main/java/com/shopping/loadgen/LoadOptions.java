@@ -0,0 +1,122 @@
+package com.shopping.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 压测参数（命令行 --name=value）
+ */
+final class LoadOptions {
+    static final String PASSWORD = "loadtest123";
+
+    String host = "localhost";
+    int port = 8080;
+    // 并发连接数，每个连接同一时刻只有一个未完成请求
+    int connections = 1000;
+    // 用户数，连接 i 使用用户 load-(i % users)；<= 0 表示每个连接一个用户
+    int users = 0;
+    int durationSeconds = 60;
+    int warmupSeconds = 10;
+    // 开环模式的总目标速率（请求/秒），按连接均分；0 表示闭环（收到响应立即发下一条）
+    double rate = 0;
+    int timeoutMs = 5000;
+    int reportIntervalSeconds = 5;
+    // I/O 线程数，<= 0 时取 CPU 核数
+    int threads = 0;
+    // 同时进行中的建连数
+    int connectConcurrency = 200;
+    // get_products 随机页码 1 ~ pages
+    int pages = 5;
+    // add_to_cart 随机商品ID firstProductId ~ firstProductId + productCount - 1
+    long firstProductId = 1001;
+    int productCount = 15;
+    String mix = "login:2,get_products:40,search:30,add_to_cart:20,checkout:8";
+
+    private Operation[] ops;
+    private int[] cumulativeWeights;
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions o = new LoadOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) throw new IllegalArgumentException("invalid argument: " + arg);
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (name) {
+                case "host": o.host = value; break;
+                case "port": o.port = Integer.parseInt(value); break;
+                case "connections": o.connections = Integer.parseInt(value); break;
+                case "users": o.users = Integer.parseInt(value); break;
+                case "duration": o.durationSeconds = Integer.parseInt(value); break;
+                case "warmup": o.warmupSeconds = Integer.parseInt(value); break;
+                case "rate": o.rate = Double.parseDouble(value); break;
+                case "timeout-ms": o.timeoutMs = Integer.parseInt(value); break;
+                case "report-interval": o.reportIntervalSeconds = Integer.parseInt(value); break;
+                case "threads": o.threads = Integer.parseInt(value); break;
+                case "connect-concurrency": o.connectConcurrency = Integer.parseInt(value); break;
+                case "pages": o.pages = Integer.parseInt(value); break;
+                case "first-product-id": o.firstProductId = Long.parseLong(value); break;
+                case "products": o.productCount = Integer.parseInt(value); break;
+                case "mix": o.mix = value; break;
+                default: throw new IllegalArgumentException("unknown option: --" + name);
+            }
+        }
+        if (o.connections < 1) throw new IllegalArgumentException("--connections must be >= 1");
+        if (o.pages < 1 || o.productCount < 1) throw new IllegalArgumentException("--pages and --products must be >= 1");
+        o.parseMix();
+        return o;
+    }
+
+    static String usage() {
+        return String.join("\n",
+                "Usage: java -jar load-generator.jar [--name=value ...]",
+                "  --host=localhost --port=8080    server address",
+                "  --connections=1000              concurrent connections (one outstanding request each)",
+                "  --users=0                       distinct users (0 = one per connection)",
+                "  --duration=60 --warmup=10       measured / warmup seconds",
+                "  --rate=0                        open-loop target requests/s in total (0 = closed loop)",
+                "  --mix=" + new LoadOptions().mix,
+                "  --timeout-ms=5000               response timeout; the connection is reopened after a timeout",
+                "  --report-interval=5             seconds between progress lines",
+                "  --threads=0                     I/O threads (0 = CPU cores)",
+                "  --connect-concurrency=200       connects in flight while ramping up",
+                "  --pages=5 --first-product-id=1001 --products=15   request parameter ranges");
+    }
+
+    String username(int connection) {
+        return "load-" + (users > 0 ? connection % users : connection);
+    }
+
+    /** @return 按权重随机选一种请求 */
+    Operation pick() {
+        int r = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < ops.length; i++) {
+            if (r < cumulativeWeights[i]) return ops[i];
+        }
+        return ops[ops.length - 1];
+    }
+
+    /** @return 开环模式下每个连接的发送间隔（纳秒），闭环返回 0 */
+    long intervalNanos() {
+        return rate > 0 ? (long) (1e9 * connections / rate) : 0;
+    }
+
+    private void parseMix() {
+        List<Operation> list = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            Operation op = Operation.of(kv[0].trim());
+            if (op == null) throw new IllegalArgumentException("unsupported operation in --mix: " + kv[0]);
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+            if (weight <= 0) continue;
+            total += weight;
+            list.add(op);
+            weights.add(total);
+        }
+        if (list.isEmpty()) throw new IllegalArgumentException("--mix has no operations");
+        ops = list.toArray(new Operation[0]);
+        cumulativeWeights = weights.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,73 @@
+package com.shopping.loadgen;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 压测的请求类型。每种请求有一个"结束响应"类型：服务端可能对一个请求发多条响应
+ * （如 checkout 先发 checkout_response 再发 order_response），收到结束响应（或 error）才算完成。
+ */
+enum Operation {
+    LOGIN("login", "login_response"),
+    GET_PRODUCTS("get_products", "products_response"),
+    SEARCH("search", "search_results"),
+    ADD_TO_CART("add_to_cart", "add_to_cart_response"),
+    CHECKOUT("checkout", "order_response");
+
+    private static final String[] KEYWORDS = {"手机", "苹果", "华为", "耳机", "电脑", "iphone", "mate"};
+
+    private final String type;
+    private final String terminalResponse;
+
+    Operation(String type, String terminalResponse) {
+        this.type = type;
+        this.terminalResponse = terminalResponse;
+    }
+
+    String type() {
+        return type;
+    }
+
+    /** @return 响应类型是否表示本请求已完成 */
+    boolean isTerminal(String responseType) {
+        return terminalResponse.equals(responseType) || "error".equals(responseType);
+    }
+
+    /**
+     * @param type 消息类型名，如 add_to_cart
+     * @return 对应的请求类型，不支持时返回 null
+     */
+    static Operation of(String type) {
+        for (Operation op : values()) {
+            if (op.type.equals(type)) return op;
+        }
+        return null;
+    }
+
+    /**
+     * 生成一条请求（一行 JSON）。seq 每条不同，避免被服务端的重复请求抑制丢弃
+     * @param options 压测参数（商品ID范围等）
+     * @param username 连接登录的用户
+     * @param seq 连接内的请求序号
+     */
+    String request(LoadOptions options, String username, long seq) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder(128).append("{\"type\":\"").append(type).append('"');
+        switch (this) {
+            case LOGIN:
+                sb.append(",\"username\":\"").append(username).append("\",\"password\":\"").append(LoadOptions.PASSWORD).append('"');
+                break;
+            case GET_PRODUCTS:
+                sb.append(",\"page\":").append(1 + random.nextInt(options.pages)).append(",\"size\":10");
+                break;
+            case SEARCH:
+                sb.append(",\"keyword\":\"").append(KEYWORDS[random.nextInt(KEYWORDS.length)]).append("\",\"size\":20");
+                break;
+            case ADD_TO_CART:
+                sb.append(",\"product_id\":").append(options.firstProductId + random.nextInt(options.productCount)).append(",\"quantity\":1");
+                break;
+            default:
+                break;
+        }
+        return sb.append(",\"seq\":").append(seq).append("}\n").toString();
+    }
+}
@@ -0,0 +1,40 @@
+package com.shopping.server.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 基准测试入口，参数与 JMH 命令行相同（如 SearchBenchmark -p products=1000）。
+ * 未指定 -rf/-rff 时结果以 JSON 写入 jmh-results/yyyyMMdd-HHmmss.json，便于与历次结果对比。
+ */
+public class BenchmarkMain {
+    private static final Path RESULTS_DIR = Paths.get("jmh-results");
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp()) {
+            cli.showHelp();
+            return;
+        }
+        if (cli.shouldList()) {
+            new Runner(cli).list();
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        if (!cli.getResult().hasValue() && !cli.getResultFormat().hasValue()) {
+            Files.createDirectories(RESULTS_DIR);
+            String name = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json";
+            options.resultFormat(ResultFormatType.JSON).result(RESULTS_DIR.resolve(name).toString());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,60 @@
+package com.shopping.server.socket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个连接同时加购、结算少数热门商品：库存预占的原子计数器、订单存储与变更日志上的竞争。
+ * skus = 1 时所有线程争用同一个商品；skus 不少于线程数时每个线程固定一个商品，只剩订单存储与日志上的竞争。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Threads(4)
+public class CartCheckoutBenchmark {
+    private static final long FIRST_ID = 900000;
+
+    @Param({"1", "16"})
+    public int skus;
+
+    private byte[][][] addToCart;
+    private byte[][] checkout;
+
+    @Setup(Level.Trial)
+    public void load(ServerState server) {
+        // 库存足够大，测量期间不会售罄
+        SocketMessageHandler.catalog().putAll(ServerState.products(skus, FIRST_ID, Integer.MAX_VALUE / 2));
+        addToCart = new byte[skus][][];
+        for (int i = 0; i < skus; i++) {
+            addToCart[i] = ServerState.variants("{\"type\":\"add_to_cart\",\"product_id\":" + (FIRST_ID + i) + ",\"quantity\":1}");
+        }
+        checkout = ServerState.variants("{\"type\":\"checkout\"}");
+    }
+
+    @Benchmark
+    public int addToCart(Client client) {
+        return client.send(addToCart[client.id % skus]);
+    }
+
+    @Benchmark
+    public int addToCartAndCheckout(Client client) {
+        client.send(addToCart[client.id % skus]);
+        return client.send(checkout);
+    }
+}
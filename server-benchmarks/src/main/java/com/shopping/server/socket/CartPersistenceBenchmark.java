@@ -0,0 +1,111 @@
+package com.shopping.server.socket;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.server.catalog.CatalogProduct;
+import com.shopping.server.socket.codec.ProtocolDetector;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 购物车持久化随用户数的变化（文件模式）：
+ * 单次购物车变更（写变更日志）与全量快照（server-data/*.json，定期及停机时执行）。
+ * 启动前先生成 users 个用户的 carts.json，由处理器按正常启动流程加载。
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CartPersistenceBenchmark {
+    private static final int REQUESTS = 1024;
+
+    @Param({"10000", "1000000"})
+    public int users;
+
+    private EmbeddedChannel channel;
+    private byte[][] requests;
+    private int seq;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        ServerState.requireCleanDataDir();
+        writeCarts(users);
+        channel = new EmbeddedChannel(new ProtocolDetector(), new SocketMessageHandler());
+        // 随机用户改数量：每条请求整车写入一条日志记录
+        SplittableRandom random = new SplittableRandom(42);
+        requests = new byte[REQUESTS][];
+        for (int i = 0; i < REQUESTS; i++) {
+            requests[i] = ("{\"type\":\"set_cart_quantity\",\"username\":\"user" + random.nextInt(users)
+                    + "\",\"product_id\":1001,\"quantity\":" + (1 + random.nextInt(5)) + ",\"seq\":" + i + "}").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        channel.finishAndReleaseAll();
+        ServerState.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public int cartChange() {
+        channel.writeInbound(Unpooled.wrappedBuffer(requests[seq++ & (REQUESTS - 1)]));
+        int responses = channel.outboundMessages().size();
+        channel.releaseOutbound();
+        return responses;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void snapshot() throws Exception {
+        SocketMessageHandler.writeSnapshot();
+    }
+
+    // carts.json：user0 ~ user{n-1}，每人 1~3 件预置商品（格式与处理器写出的快照相同）
+    private static void writeCarts(int n) throws IOException {
+        Files.createDirectories(ServerState.DATA_DIR);
+        List<CatalogProduct> products = ServerState.products(3, 1001, 100);
+        ObjectMapper mapper = new ObjectMapper();
+        SplittableRandom random = new SplittableRandom(7);
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(ServerState.DATA_DIR.resolve("carts.json").toFile(), JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            for (int u = 0; u < n; u++) {
+                gen.writeArrayFieldStart("user" + u);
+                int lines = 1 + random.nextInt(3);
+                for (int i = 0; i < lines; i++) {
+                    Map<String, Object> item = products.get(i).toMap();
+                    item.put("quantity", 1 + random.nextInt(5));
+                    gen.writeObject(item);
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndObject();
+        }
+    }
+}
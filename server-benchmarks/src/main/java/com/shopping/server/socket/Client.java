@@ -0,0 +1,58 @@
+package com.shopping.server.socket;
+
+import com.shopping.server.socket.codec.ProtocolDetector;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个基准线程一个连接：EmbeddedChannel 上是与线上相同的管道（协议识别 → JSON 解码 → 处理器），不经过网络。
+ * 连接建立后注册并登录一个独立用户，之后的请求不带用户名。
+ */
+@State(Scope.Thread)
+public class Client {
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    EmbeddedChannel channel;
+    int id;
+    String username;
+    private int seq;
+
+    @Setup(Level.Trial)
+    public void connect(ServerState server) {
+        channel = new EmbeddedChannel(new ProtocolDetector(), server.handler);
+        id = IDS.getAndIncrement();
+        username = "bench-" + id;
+        send(("{\"type\":\"register\",\"username\":\"" + username + "\",\"password\":\"bench-password\"}").getBytes());
+        send(("{\"type\":\"login\",\"username\":\"" + username + "\",\"password\":\"bench-password\"}").getBytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * 发送一条请求（同步处理完毕）并丢弃响应
+     * @return 响应条数
+     */
+    int send(byte[] request) {
+        channel.writeInbound(Unpooled.wrappedBuffer(request));
+        // 执行到期的定时任务（库存变化推送）
+        channel.runPendingTasks();
+        int responses = channel.outboundMessages().size();
+        channel.releaseOutbound();
+        return responses;
+    }
+
+    /** 轮流发送请求的各个变体 */
+    int send(byte[][] variants) {
+        return send(variants[seq++ & (ServerState.VARIANTS - 1)]);
+    }
+}
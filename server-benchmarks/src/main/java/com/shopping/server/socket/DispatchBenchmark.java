@@ -0,0 +1,44 @@
+package com.shopping.server.socket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON 请求的解码与分发（channelRead0 → 命令绑定 → 处理器 → 响应编码），按请求类型对比固定开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+    private static final byte[][] PRODUCT_DETAIL = ServerState.variants("{\"type\":\"get_product_detail\",\"product_id\":1001}");
+    // 命中预编码响应缓存
+    private static final byte[][] PRODUCT_PAGE = ServerState.variants("{\"type\":\"get_products\",\"page\":1,\"size\":10}");
+    private static final byte[][] UNKNOWN_TYPE = ServerState.variants("{\"type\":\"no_such_type\"}");
+
+    @Benchmark
+    public int getProductDetail(Client client) {
+        return client.send(PRODUCT_DETAIL);
+    }
+
+    @Benchmark
+    public int getProductsCached(Client client) {
+        return client.send(PRODUCT_PAGE);
+    }
+
+    @Benchmark
+    public int unknownType(Client client) {
+        return client.send(UNKNOWN_TYPE);
+    }
+}
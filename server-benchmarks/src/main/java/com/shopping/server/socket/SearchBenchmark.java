@@ -0,0 +1,47 @@
+package com.shopping.server.socket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * search 请求（handleSearch）随目录规模的变化：常见词命中目录的 1/4，组合词只命中少量商品
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int products;
+
+    @Param({"phone", "brand7 camera"})
+    public String keyword;
+
+    private byte[][] requests;
+
+    @Setup(Level.Trial)
+    public void load(ServerState server) {
+        SocketMessageHandler.catalog().putAll(ServerState.products(products, 100000, 100));
+        requests = ServerState.variants("{\"type\":\"search\",\"keyword\":\"" + keyword + "\",\"page\":1,\"size\":20}");
+    }
+
+    @Benchmark
+    public int search(Client client) {
+        return client.send(requests);
+    }
+}
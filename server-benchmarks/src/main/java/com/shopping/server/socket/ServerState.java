@@ -0,0 +1,88 @@
+package com.shopping.server.socket;
+
+import com.shopping.server.catalog.CatalogProduct;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 被测的 socket 处理器（无业务线程池，请求在调用线程上同步处理）。
+ * 处理器的数据都是静态的：JMH 为每个基准、每组参数单独 fork 进程，互不影响。
+ * 文件持久化写在当前目录的 server-data 下，启动前要求该目录不存在（不碰真实数据），结束后删除。
+ */
+@State(Scope.Benchmark)
+public class ServerState {
+    static final Path DATA_DIR = Paths.get("server-data");
+    // 同一请求的不同变体数：超过处理器的去重窗口（32 条），循环发送时不会被当作重复请求丢弃
+    static final int VARIANTS = 64;
+
+    SocketMessageHandler handler;
+
+    @Setup(Level.Trial)
+    public void start() {
+        requireCleanDataDir();
+        handler = new SocketMessageHandler();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        shutdown();
+    }
+
+    static void requireCleanDataDir() {
+        if (Files.exists(DATA_DIR)) {
+            throw new IllegalStateException(DATA_DIR.toAbsolutePath() + " already exists; run the benchmarks from an empty directory");
+        }
+    }
+
+    /** 停止变更日志并删除数据目录 */
+    static void shutdown() throws IOException {
+        SocketMessageHandler.journal().close();
+        if (!Files.exists(DATA_DIR)) return;
+        try (Stream<Path> files = Files.walk(DATA_DIR)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    /**
+     * 同一请求的 {@link #VARIANTS} 个变体（附加不同的 seq 字段），预先编码为字节
+     * @param json 一个 JSON 对象
+     */
+    static byte[][] variants(String json) {
+        byte[][] out = new byte[VARIANTS][];
+        String body = json.substring(0, json.lastIndexOf('}'));
+        for (int i = 0; i < VARIANTS; i++) out[i] = (body + ",\"seq\":" + i + "}").getBytes(StandardCharsets.UTF_8);
+        return out;
+    }
+
+    /**
+     * 生成商品：名称为 "brandB phone|laptop|watch|camera xM"，描述带两个中文词，便于按常见词/少见词组合搜索
+     * @param count 商品数
+     * @param firstId 起始商品ID
+     * @param stock 每个商品的库存
+     */
+    static List<CatalogProduct> products(int count, long firstId, int stock) {
+        String[] kinds = {"phone", "laptop", "watch", "camera"};
+        String[] words = {"手机", "电脑", "手表", "相机", "耳机", "平板"};
+        List<CatalogProduct> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "brand" + (i % 50) + " " + kinds[i % kinds.length] + " x" + (i % 1000);
+            String description = words[i % words.length] + words[(i / 7) % words.length] + " " + name;
+            out.add(new CatalogProduct(firstId + i, name, 10 + (i % 5000), description,
+                    "https://example.com/product/" + (firstId + i) + ".jpg", stock, false));
+        }
+        return out;
+    }
+}
@@ -13,7 +13,7 @@ set "SERVER_PORT=%~1"
 if "%SERVER_PORT%"=="" set "SERVER_PORT=8081"
 echo Using Spring Boot HTTP port: %SERVER_PORT%
 
-set "JAR=target\shopping-server-1.0-SNAPSHOT.jar"
+set "JAR=target\shopping-server-1.0-SNAPSHOT-exec.jar"
 
 echo Packaging server (skip tests)...
 where mvn >nul 2>&1
@@ -0,0 +1,21 @@
+package com.shopping.server.catalog;
+
+import java.util.List;
+
+/**
+ * 商品目录变更监听。回调在目录写锁内、新快照发布之后同步执行。
+ */
+public interface CatalogListener {
+    /**
+     * 一批商品被新增或替换
+     * @param previous 替换前的记录，与 current 按下标一一对应；新增时对应元素为 null
+     * @param current 新记录
+     */
+    void onUpsert(List<CatalogProduct> previous, List<CatalogProduct> current);
+
+    /**
+     * 商品被下架
+     * @param removed 被移除的记录
+     */
+    void onRemove(CatalogProduct removed);
+}
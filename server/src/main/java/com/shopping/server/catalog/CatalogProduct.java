@@ -0,0 +1,94 @@
+package com.shopping.server.catalog;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存商品目录中的一条商品记录。
+ * 除库存外的字段均不可变；修改商品信息时替换整条记录。
+ * 库存是每个 SKU 一个原子计数器，替换记录时沿用原计数器，只能经由 {@link StockEngine} 修改。
+ */
+public final class CatalogProduct {
+    private final long productId;
+    private final String name;
+    private final double price;
+    private final String description;
+    private final String imageUrl;
+    private final boolean onSale;
+    // 促销价，0 表示未设置
+    private final double discountPrice;
+    private final AtomicInteger stock;
+
+    public CatalogProduct(long productId, String name, double price, String description,
+                          String imageUrl, int stock, boolean onSale) {
+        this(productId, name, price, description, imageUrl, stock, onSale, 0);
+    }
+
+    public CatalogProduct(long productId, String name, double price, String description,
+                          String imageUrl, int stock, boolean onSale, double discountPrice) {
+        this.productId = productId;
+        this.name = name;
+        this.price = price;
+        this.description = description;
+        this.imageUrl = imageUrl;
+        this.stock = new AtomicInteger(stock);
+        this.onSale = onSale;
+        this.discountPrice = discountPrice;
+    }
+
+    private CatalogProduct(CatalogProduct details, AtomicInteger stock) {
+        this.productId = details.productId;
+        this.name = details.name;
+        this.price = details.price;
+        this.description = details.description;
+        this.imageUrl = details.imageUrl;
+        this.onSale = details.onSale;
+        this.discountPrice = details.discountPrice;
+        this.stock = stock;
+    }
+
+    /**
+     * 以本记录的商品信息、other 的库存计数器构造新记录
+     */
+    CatalogProduct withStockOf(CatalogProduct other) {
+        return other.stock == stock ? this : new CatalogProduct(this, other.stock);
+    }
+
+    AtomicInteger stockCounter() { return stock; }
+
+    public long getProductId() { return productId; }
+    public String getName() { return name; }
+    public double getPrice() { return price; }
+    public String getDescription() { return description; }
+    public String getImageUrl() { return imageUrl; }
+    public boolean isOnSale() { return onSale; }
+    public double getDiscountPrice() { return discountPrice; }
+    public int getStock() { return stock.get(); }
+
+    /**
+     * @return 折扣力度 (原价 - 促销价) / 原价；未促销或促销价无效时为 0
+     */
+    public double discountRatio() {
+        if (!onSale || discountPrice <= 0 || discountPrice >= price) return 0;
+        return (price - discountPrice) / price;
+    }
+
+    /**
+     * 转为旧版 Map 结构（字段名与历史 JSON 输出保持一致）
+     * @return 商品字段 Map
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("product_id", productId);
+        m.put("name", name);
+        m.put("price", price);
+        m.put("quantity", 1);
+        m.put("description", description);
+        m.put("image_url", imageUrl);
+        m.put("stock", stock.get());
+        m.put("on_sale", onSale);
+        if (onSale && discountPrice > 0) m.put("discount_price", discountPrice);
+        return m;
+    }
+}
@@ -0,0 +1,156 @@
+package com.shopping.server.catalog;
+
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存商品目录：按 productId 建立原始 long 键索引，查找为 O(1)。
+ * 读操作无锁，直接访问当前快照；写操作（上架/改价/下架）较少，
+ * 采用写时复制生成新快照，语义与原先的 CopyOnWriteArrayList 一致。
+ */
+public class ProductCatalog {
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new LongObjectHashMap<>(), new CatalogProduct[0]);
+
+        final LongObjectHashMap<CatalogProduct> byId;
+        // 按上架顺序排列，用于分页
+        final CatalogProduct[] ordered;
+
+        Snapshot(LongObjectHashMap<CatalogProduct> byId, CatalogProduct[] ordered) {
+            this.byId = byId;
+            this.ordered = ordered;
+        }
+    }
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // 每次发布新快照时递增，供派生缓存判断是否过期
+    private final AtomicLong version = new AtomicLong();
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 注册目录变更监听（搜索索引等派生结构通过它保持同步）
+     * @param listener 监听器
+     */
+    public void addListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 根据商品ID查找商品
+     * @param productId 商品ID
+     * @return 商品，不存在时返回 null
+     */
+    public CatalogProduct get(long productId) {
+        return snapshot.byId.get(productId);
+    }
+
+    /**
+     * @return 目录版本号，商品上架/改价/下架后递增（库存变化见 {@link StockEngine#version()}）
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public int size() {
+        return snapshot.ordered.length;
+    }
+
+    public boolean isEmpty() {
+        return snapshot.ordered.length == 0;
+    }
+
+    /**
+     * @return 第一个商品，目录为空时返回 null
+     */
+    public CatalogProduct first() {
+        CatalogProduct[] arr = snapshot.ordered;
+        return arr.length == 0 ? null : arr[0];
+    }
+
+    /**
+     * 按上架顺序取 [from, to) 区间的商品（越界部分自动截断）
+     * @param from 起始下标（含）
+     * @param to 结束下标（不含）
+     * @return 只读商品列表
+     */
+    public List<CatalogProduct> slice(int from, int to) {
+        CatalogProduct[] arr = snapshot.ordered;
+        int lo = Math.max(0, Math.min(from, arr.length));
+        int hi = Math.max(lo, Math.min(to, arr.length));
+        return Collections.unmodifiableList(Arrays.asList(arr).subList(lo, hi));
+    }
+
+    /**
+     * @return 当前快照中的全部商品（只读）
+     */
+    public List<CatalogProduct> all() {
+        return Collections.unmodifiableList(Arrays.asList(snapshot.ordered));
+    }
+
+    /**
+     * 新增或替换商品（同ID替换时保留原有位置）
+     * @param product 商品
+     */
+    public void put(CatalogProduct product) {
+        putAll(Collections.singletonList(product));
+    }
+
+    /**
+     * 批量新增或替换商品，只生成一次新快照。
+     * 替换已有商品时只更新商品信息，库存计数器沿用原记录（库存变更走 {@link StockEngine}）
+     * @param products 商品集合
+     */
+    public synchronized void putAll(Collection<CatalogProduct> products) {
+        Snapshot cur = snapshot;
+        LongObjectHashMap<CatalogProduct> byId = new LongObjectHashMap<>(Math.max(8, (cur.ordered.length + products.size()) * 2));
+        byId.putAll(cur.byId);
+        // 新上架商品的ID（按首次出现顺序）
+        long[] added = new long[products.size()];
+        int addedCount = 0;
+        List<CatalogProduct> previous = new ArrayList<>(products.size());
+        List<CatalogProduct> current = new ArrayList<>(products.size());
+        for (CatalogProduct p : products) {
+            CatalogProduct old = byId.get(p.getProductId());
+            if (old != null) p = p.withStockOf(old);
+            byId.put(p.getProductId(), p);
+            if (old == null) added[addedCount++] = p.getProductId();
+            previous.add(old);
+            current.add(p);
+        }
+        // 一趟重建顺序数组：原有位置取替换后的商品，新商品追加在末尾
+        CatalogProduct[] ordered = new CatalogProduct[cur.ordered.length + addedCount];
+        for (int i = 0; i < cur.ordered.length; i++) ordered[i] = byId.get(cur.ordered[i].getProductId());
+        for (int i = 0; i < addedCount; i++) ordered[cur.ordered.length + i] = byId.get(added[i]);
+        snapshot = new Snapshot(byId, ordered);
+        version.incrementAndGet();
+        for (CatalogListener l : listeners) l.onUpsert(previous, current);
+    }
+
+    /**
+     * 下架商品
+     * @param productId 商品ID
+     * @return 被移除的商品，不存在时返回 null
+     */
+    public synchronized CatalogProduct remove(long productId) {
+        Snapshot cur = snapshot;
+        CatalogProduct old = cur.byId.get(productId);
+        if (old == null) return null;
+        LongObjectHashMap<CatalogProduct> byId = new LongObjectHashMap<>(Math.max(8, cur.ordered.length * 2));
+        byId.putAll(cur.byId);
+        byId.remove(productId);
+        List<CatalogProduct> ordered = new ArrayList<>(Arrays.asList(cur.ordered));
+        ordered.remove(old);
+        snapshot = new Snapshot(byId, ordered.toArray(new CatalogProduct[0]));
+        version.incrementAndGet();
+        for (CatalogListener l : listeners) l.onRemove(old);
+        return old;
+    }
+}
@@ -0,0 +1,259 @@
+package com.shopping.server.catalog;
+
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 商品名称/描述的内存倒排索引。
+ * 每个词项对应一个按商品ID升序的不可变倒排表，查询时从最短的倒排表开始求交集，
+ * 代价只与命中的倒排表长度相关，与目录总量无关。
+ * 通过 {@link CatalogListener} 跟随商品目录增量更新。
+ */
+public class ProductSearchIndex implements CatalogListener {
+    // 名称命中权重高于描述命中
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    /** 单个词项的倒排表（不可变） */
+    private static final class Postings {
+        final long[] ids;
+        final int[] weights;
+
+        Postings(long[] ids, int[] weights) {
+            this.ids = ids;
+            this.weights = weights;
+        }
+    }
+
+    /** 查询结果：命中总数 + 当前页商品 */
+    public static final class Result {
+        private final int total;
+        private final List<CatalogProduct> products;
+
+        Result(int total, List<CatalogProduct> products) {
+            this.total = total;
+            this.products = products;
+        }
+
+        public int getTotal() { return total; }
+        public List<CatalogProduct> getProducts() { return products; }
+    }
+
+    private final ProductCatalog catalog;
+    private final Map<String, Postings> index = new ConcurrentHashMap<>();
+    // 每个商品已索引的词项（仅写路径访问，用于增量删除）
+    private final LongObjectHashMap<String[]> docTerms = new LongObjectHashMap<>();
+
+    public ProductSearchIndex(ProductCatalog catalog) {
+        this.catalog = catalog;
+        catalog.addListener(this);
+        List<CatalogProduct> existing = catalog.all();
+        onUpsert(Arrays.asList(new CatalogProduct[existing.size()]), existing);
+    }
+
+    /**
+     * 检索商品，按相关度降序（同分按商品ID升序）
+     * @param query 查询串，为空时按目录顺序返回全部商品
+     * @param offset 跳过的条数
+     * @param limit 返回的最大条数，&lt;= 0 表示不限
+     * @return 命中总数与当前页商品
+     */
+    public Result search(String query, int offset, int limit) {
+        offset = Math.max(0, offset);
+        List<String> terms = SearchTokenizer.queryTokens(query);
+        if (terms.isEmpty()) {
+            int total = catalog.size();
+            int from = Math.min(offset, total);
+            int to = limit <= 0 ? total : (int) Math.min((long) from + limit, total);
+            return new Result(total, catalog.slice(from, to));
+        }
+        List<Postings> lists = new ArrayList<>(terms.size());
+        for (String t : terms) {
+            Postings p = index.get(t);
+            if (p == null) return new Result(0, Collections.emptyList());
+            lists.add(p);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.ids.length));
+
+        // 从最短的倒排表开始逐个求交集，同时累加得分
+        long[] ids = lists.get(0).ids.clone();
+        int[] scores = lists.get(0).weights.clone();
+        int n = ids.length;
+        for (int li = 1; li < lists.size() && n > 0; li++) {
+            Postings other = lists.get(li);
+            int m = 0;
+            int from = 0;
+            for (int i = 0; i < n; i++) {
+                int pos = Arrays.binarySearch(other.ids, from, other.ids.length, ids[i]);
+                if (pos >= 0) {
+                    ids[m] = ids[i];
+                    scores[m] = scores[i] + other.weights[pos];
+                    m++;
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+            }
+            n = m;
+        }
+
+        int total = n;
+        if (offset >= total) return new Result(total, Collections.emptyList());
+        int k = limit <= 0 ? total : (int) Math.min((long) offset + limit, total);
+        // 排序键：高 32 位为得分，低 32 位为下标取反；倒排表按ID升序，故同分时ID小者键更大
+        long[] heap = new long[k];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            long key = ((long) scores[i] << 32) | (Integer.MAX_VALUE - i);
+            if (size < k) {
+                heap[size] = key;
+                siftUp(heap, size++);
+            } else if (key > heap[0]) {
+                heap[0] = key;
+                siftDown(heap, size);
+            }
+        }
+        Arrays.sort(heap, 0, size);
+        List<CatalogProduct> page = new ArrayList<>(Math.max(0, size - offset));
+        for (int r = size - 1 - offset; r >= 0; r--) {
+            int i = Integer.MAX_VALUE - (int) heap[r];
+            CatalogProduct p = catalog.get(ids[i]);
+            if (p != null) page.add(p);
+        }
+        return new Result(total, page);
+    }
+
+    // 小根堆：堆顶为当前第 k 名
+    private static void siftUp(long[] heap, int i) {
+        long v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= v) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = v;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long v = heap[0];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (v <= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = v;
+    }
+
+    @Override
+    public synchronized void onUpsert(List<CatalogProduct> previous, List<CatalogProduct> current) {
+        // 汇总本批次每个词项需要删除/新增的商品，每个倒排表只重建一次
+        Map<String, Delta> changes = new HashMap<>();
+        for (CatalogProduct p : current) {
+            long id = p.getProductId();
+            String[] oldTerms = docTerms.get(id);
+            if (oldTerms != null) {
+                for (String t : oldTerms) changes.computeIfAbsent(t, k -> new Delta()).add(id, 0);
+            }
+            Map<String, Integer> terms = new HashMap<>();
+            SearchTokenizer.indexTokens(p.getName(), NAME_WEIGHT, terms);
+            SearchTokenizer.indexTokens(p.getDescription(), DESCRIPTION_WEIGHT, terms);
+            docTerms.put(id, terms.keySet().toArray(new String[0]));
+            for (Map.Entry<String, Integer> e : terms.entrySet()) {
+                changes.computeIfAbsent(e.getKey(), k -> new Delta()).add(id, e.getValue());
+            }
+        }
+        apply(changes);
+    }
+
+    @Override
+    public synchronized void onRemove(CatalogProduct removed) {
+        String[] oldTerms = docTerms.remove(removed.getProductId());
+        if (oldTerms == null) return;
+        Map<String, Delta> changes = new HashMap<>();
+        for (String t : oldTerms) changes.computeIfAbsent(t, k -> new Delta()).add(removed.getProductId(), 0);
+        apply(changes);
+    }
+
+    /** 单个词项在一个批次内的变更：权重为 0 表示删除，否则新增或覆盖（同ID以最后一次为准） */
+    private static final class Delta {
+        long[] ids = new long[4];
+        int[] weights = new int[4];
+        int size;
+
+        void add(long id, int weight) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ids[size] = id;
+            weights[size++] = weight;
+        }
+
+        /** 按ID排序并去重，返回去重后的长度 */
+        int sortUnique() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) sorted = ids[i - 1] < ids[i];
+            if (!sorted) {
+                // 按 (id, 出现顺序) 排序，保证同ID保留最后一次
+                long[][] pairs = new long[size][];
+                for (int i = 0; i < size; i++) pairs[i] = new long[]{ids[i], i, weights[i]};
+                Arrays.sort(pairs, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+                int n = 0;
+                for (int i = 0; i < size; i++) {
+                    if (n > 0 && ids[n - 1] == pairs[i][0]) n--;
+                    ids[n] = pairs[i][0];
+                    weights[n++] = (int) pairs[i][2];
+                }
+                size = n;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * 将变更归并进倒排表
+     */
+    private void apply(Map<String, Delta> changes) {
+        for (Map.Entry<String, Delta> e : changes.entrySet()) {
+            Delta delta = e.getValue();
+            int dn = delta.sortUnique();
+            Postings old = index.get(e.getKey());
+            long[] oldIds = old == null ? new long[0] : old.ids;
+            int[] oldWeights = old == null ? new int[0] : old.weights;
+            long[] ids = new long[oldIds.length + dn];
+            int[] weights = new int[ids.length];
+            int i = 0, j = 0, w = 0;
+            while (i < oldIds.length || j < dn) {
+                if (j >= dn || (i < oldIds.length && oldIds[i] < delta.ids[j])) {
+                    ids[w] = oldIds[i];
+                    weights[w++] = oldWeights[i++];
+                } else {
+                    if (i < oldIds.length && oldIds[i] == delta.ids[j]) i++;
+                    if (delta.weights[j] > 0) {
+                        ids[w] = delta.ids[j];
+                        weights[w++] = delta.weights[j];
+                    }
+                    j++;
+                }
+            }
+            if (w == 0) {
+                index.remove(e.getKey());
+            } else {
+                index.put(e.getKey(), new Postings(Arrays.copyOf(ids, w), Arrays.copyOf(weights, w)));
+            }
+        }
+    }
+}
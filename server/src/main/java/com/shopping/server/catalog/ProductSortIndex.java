@@ -0,0 +1,214 @@
+package com.shopping.server.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 商品列表的有序视图，支持按 商品ID / 价格 / 库存 升降序的键集（游标）分页。
+ * 每种排序一份按 (排序键, 商品ID) 排好的数组，定位游标为二分查找，取一页只复制 limit 个引用，与页深无关。
+ * 视图按版本号惰性重建：ID/价格视图跟随目录版本。库存视图在目录变化时立即重建；
+ * 只有库存变化（{@link StockEngine#version()}，每次下单都会变）时最多每 {@link #STOCK_MAX_STALE_MS} 毫秒重排一次，
+ * 且由一个请求重排，其余请求继续使用旧视图，下单频繁时翻页耗时不随之抖动。库存排序因此可能滞后至多约一秒。
+ */
+public class ProductSortIndex {
+
+    /** 排序键 */
+    public enum SortKey {
+        ID, PRICE, STOCK;
+
+        /**
+         * @param name id / price / stock（不区分大小写），null 表示 id
+         * @return 排序键，无法识别时返回 null
+         */
+        public static SortKey parse(String name) {
+            if (name == null) return ID;
+            switch (name.toLowerCase()) {
+                case "id": return ID;
+                case "price": return PRICE;
+                case "stock": return STOCK;
+                default: return null;
+            }
+        }
+    }
+
+    /** 一页结果 */
+    public static final class Page {
+        private final List<CatalogProduct> products;
+        private final String nextCursor;
+
+        Page(List<CatalogProduct> products, String nextCursor) {
+            this.products = products;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<CatalogProduct> getProducts() { return products; }
+
+        /** @return 下一页游标，没有更多时为 null */
+        public String getNextCursor() { return nextCursor; }
+    }
+
+    /** 库存视图在库存变化后允许沿用的最长时间（毫秒） */
+    public static final long STOCK_MAX_STALE_MS = 1000;
+
+    private static final class View {
+        final long catalogVersion;
+        final long stockVersion;
+        final long builtAt = System.nanoTime();
+        // 按 (keys[i], items[i].productId) 升序
+        final CatalogProduct[] items;
+        final long[] keys;
+
+        View(long catalogVersion, long stockVersion, CatalogProduct[] items, long[] keys) {
+            this.catalogVersion = catalogVersion;
+            this.stockVersion = stockVersion;
+            this.items = items;
+            this.keys = keys;
+        }
+    }
+
+    private final ProductCatalog catalog;
+    private final StockEngine stock;
+    private final AtomicReferenceArray<View> views = new AtomicReferenceArray<>(SortKey.values().length);
+    // 库存视图是否正在因库存变化重排
+    private final AtomicBoolean restocking = new AtomicBoolean();
+
+    public ProductSortIndex(ProductCatalog catalog, StockEngine stock) {
+        this.catalog = catalog;
+        this.stock = stock;
+    }
+
+    /**
+     * 取一页商品
+     * @param key 排序键
+     * @param descending 是否降序
+     * @param cursor 上一页返回的游标，第一页传 null
+     * @param limit 每页条数
+     * @return 一页商品及下一页游标
+     * @throws IllegalArgumentException 游标格式无效
+     */
+    public Page page(SortKey key, boolean descending, String cursor, int limit) {
+        View v = view(key);
+        int n = v.items.length;
+        if (!descending) {
+            // 第一个 (键, ID) 大于游标的位置；升序页直接是视图数组的子区间，不复制
+            int from = cursor == null ? 0 : upperBound(v, cursor);
+            int to = (int) Math.min(n, (long) from + limit);
+            List<CatalogProduct> out = Collections.unmodifiableList(Arrays.asList(v.items).subList(from, to));
+            return new Page(out, to < n && to > from ? cursorOf(v, to - 1) : null);
+        }
+        // 降序：从最后一个 (键, ID) 小于游标的位置向前
+        List<CatalogProduct> out = new ArrayList<>(Math.min(limit, n));
+        int i = (cursor == null ? n : lowerBound(v, cursor)) - 1;
+        for (; i >= 0 && out.size() < limit; i--) out.add(v.items[i]);
+        return new Page(Collections.unmodifiableList(out), i >= 0 && !out.isEmpty() ? cursorOf(v, i + 1) : null);
+    }
+
+    private View view(SortKey key) {
+        long cv = catalog.version();
+        long sv = key == SortKey.STOCK ? stock.version() : 0;
+        View v = views.get(key.ordinal());
+        if (v != null && v.catalogVersion == cv && v.stockVersion == sv) return v;
+        if (v != null && v.catalogVersion == cv) {
+            // 只有库存变化：未超过允许的滞后时间，或已有请求在重排时，沿用旧视图
+            if (System.nanoTime() - v.builtAt < TimeUnit.MILLISECONDS.toNanos(STOCK_MAX_STALE_MS)
+                    || !restocking.compareAndSet(false, true)) {
+                return v;
+            }
+            try {
+                View rebuilt = build(key, cv, sv);
+                // 重排期间目录可能已变化，此时交给下面的同步路径
+                if (views.compareAndSet(key.ordinal(), v, rebuilt)) return rebuilt;
+            } finally {
+                restocking.set(false);
+            }
+            return view(key);
+        }
+        // 目录变化或首次访问：同一版本只重建一次
+        synchronized (views) {
+            v = views.get(key.ordinal());
+            if (v != null && v.catalogVersion == cv && v.stockVersion == sv) return v;
+            v = build(key, cv, sv);
+            views.set(key.ordinal(), v);
+            return v;
+        }
+    }
+
+    private View build(SortKey key, long catalogVersion, long stockVersion) {
+        List<CatalogProduct> all = catalog.all();
+        int n = all.size();
+        // 先取出排序键（库存在排序期间可能变化，以取出时的值为准），再按 (键, ID) 排序下标
+        long[] raw = new long[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            raw[i] = keyOf(key, all.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> raw[a] != raw[b] ? Long.compare(raw[a], raw[b])
+                : Long.compare(all.get(a).getProductId(), all.get(b).getProductId()));
+        CatalogProduct[] items = new CatalogProduct[n];
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = all.get(order[i]);
+            keys[i] = raw[order[i]];
+        }
+        return new View(catalogVersion, stockVersion, items, keys);
+    }
+
+    // 价格按分取整，键统一为 long
+    private static long keyOf(SortKey key, CatalogProduct p) {
+        switch (key) {
+            case PRICE: return Math.round(p.getPrice() * 100);
+            case STOCK: return p.getStock();
+            default: return p.getProductId();
+        }
+    }
+
+    // 游标格式："排序键:商品ID"（对客户端不透明，原样回传）
+    private static String cursorOf(View v, int i) {
+        return v.keys[i] + ":" + v.items[i].getProductId();
+    }
+
+    private static long[] parseCursor(String cursor) {
+        int sep = cursor.indexOf(':');
+        try {
+            if (sep > 0) return new long[]{Long.parseLong(cursor.substring(0, sep)), Long.parseLong(cursor.substring(sep + 1))};
+        } catch (NumberFormatException ignored) {
+            // 按格式无效处理
+        }
+        throw new IllegalArgumentException("invalid cursor: " + cursor);
+    }
+
+    // 第一个 (键, ID) > 游标 的下标
+    private static int upperBound(View v, String cursor) {
+        long[] c = parseCursor(cursor);
+        int lo = 0;
+        int hi = v.items.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(v, mid, c) <= 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // 第一个 (键, ID) >= 游标 的下标
+    private static int lowerBound(View v, String cursor) {
+        long[] c = parseCursor(cursor);
+        int lo = 0;
+        int hi = v.items.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(v, mid, c) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int compare(View v, int i, long[] cursor) {
+        int c = Long.compare(v.keys[i], cursor[0]);
+        return c != 0 ? c : Long.compare(v.items[i].getProductId(), cursor[1]);
+    }
+}
@@ -0,0 +1,127 @@
+package com.shopping.server.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 促销商品排行索引：只收录在促销中的商品（onSale 且促销价低于原价），
+ * 同时维护按折扣力度降序、按价格升序两份有序数组。
+ * 读操作无锁，Top-K 为 O(K)，价格区间为二分定位 + 顺序截取；写操作随目录变更写时复制（与 {@link ProductCatalog} 一致）。
+ * 通过 {@link CatalogListener} 跟随商品目录增量更新。
+ */
+public class PromotionIndex implements CatalogListener {
+    // 折扣力度降序，同力度按商品ID升序
+    private static final Comparator<CatalogProduct> BY_DISCOUNT =
+            Comparator.comparingDouble(CatalogProduct::discountRatio).reversed()
+                    .thenComparingLong(CatalogProduct::getProductId);
+    // 原价升序，同价按商品ID升序
+    private static final Comparator<CatalogProduct> BY_PRICE =
+            Comparator.comparingDouble(CatalogProduct::getPrice).thenComparingLong(CatalogProduct::getProductId);
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new CatalogProduct[0], new CatalogProduct[0]);
+
+        final CatalogProduct[] byDiscount;
+        final CatalogProduct[] byPrice;
+
+        Snapshot(CatalogProduct[] byDiscount, CatalogProduct[] byPrice) {
+            this.byDiscount = byDiscount;
+            this.byPrice = byPrice;
+        }
+    }
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public PromotionIndex(ProductCatalog catalog) {
+        catalog.addListener(this);
+        List<CatalogProduct> existing = catalog.all();
+        onUpsert(Arrays.asList(new CatalogProduct[existing.size()]), existing);
+    }
+
+    /**
+     * 折扣力度最大的 K 个促销商品
+     * @param limit K
+     * @return 只读商品列表，按折扣力度降序
+     */
+    public List<CatalogProduct> top(int limit) {
+        CatalogProduct[] arr = snapshot.byDiscount;
+        int n = Math.max(0, Math.min(limit, arr.length));
+        return Collections.unmodifiableList(Arrays.asList(arr).subList(0, n));
+    }
+
+    /**
+     * 原价在 [minPrice, maxPrice] 区间内的促销商品（对应 findByOnSaleTrueAndPriceBetween）
+     * @param minPrice 最低价格（含）
+     * @param maxPrice 最高价格（含）
+     * @return 只读商品列表，按价格升序
+     */
+    public List<CatalogProduct> priceBetween(double minPrice, double maxPrice) {
+        CatalogProduct[] arr = snapshot.byPrice;
+        int from = lowerBound(arr, minPrice, false);
+        int to = lowerBound(arr, maxPrice, true);
+        if (from >= to) return Collections.emptyList();
+        return Collections.unmodifiableList(Arrays.asList(arr).subList(from, to));
+    }
+
+    /** @return 促销商品数 */
+    public int size() {
+        return snapshot.byDiscount.length;
+    }
+
+    @Override
+    public synchronized void onUpsert(List<CatalogProduct> previous, List<CatalogProduct> current) {
+        List<CatalogProduct> removed = new ArrayList<>(previous.size());
+        for (CatalogProduct p : previous) if (p != null) removed.add(p);
+        List<CatalogProduct> added = new ArrayList<>(current.size());
+        for (CatalogProduct p : current) if (p.discountRatio() > 0) added.add(p);
+        apply(removed, added);
+    }
+
+    @Override
+    public synchronized void onRemove(CatalogProduct removed) {
+        apply(Collections.singletonList(removed), Collections.emptyList());
+    }
+
+    private void apply(List<CatalogProduct> removed, List<CatalogProduct> added) {
+        if (removed.isEmpty() && added.isEmpty()) return;
+        Snapshot cur = snapshot;
+        snapshot = new Snapshot(merge(cur.byDiscount, removed, added, BY_DISCOUNT),
+                merge(cur.byPrice, removed, added, BY_PRICE));
+    }
+
+    // 去掉 removed 中的商品（按ID）后与排好序的 added 归并，一次线性扫描
+    private static CatalogProduct[] merge(CatalogProduct[] sorted, List<CatalogProduct> removed,
+                                          List<CatalogProduct> added, Comparator<CatalogProduct> order) {
+        long[] gone = new long[removed.size()];
+        for (int i = 0; i < gone.length; i++) gone[i] = removed.get(i).getProductId();
+        Arrays.sort(gone);
+        CatalogProduct[] extra = added.toArray(new CatalogProduct[0]);
+        Arrays.sort(extra, order);
+        CatalogProduct[] out = new CatalogProduct[sorted.length + extra.length];
+        int n = 0;
+        int j = 0;
+        for (CatalogProduct p : sorted) {
+            if (Arrays.binarySearch(gone, p.getProductId()) >= 0) continue;
+            while (j < extra.length && order.compare(extra[j], p) < 0) out[n++] = extra[j++];
+            out[n++] = p;
+        }
+        while (j < extra.length) out[n++] = extra[j++];
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    // 第一个价格 >= price（inclusive 为 true 时 > price）的下标
+    private static int lowerBound(CatalogProduct[] arr, double price, boolean inclusive) {
+        int lo = 0;
+        int hi = arr.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            double p = arr[mid].getPrice();
+            if (p < price || (inclusive && p == price)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,124 @@
+package com.shopping.server.catalog;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 搜索分词：
+ * - 中日韩文字按字切分，索引单字与相邻二字组（n-gram），查询时用二字组，单字查询退化为单字
+ * - 其余字母数字按词切分并转小写，索引词内的全部子串（长度不超过 MAX_SUBSTRING），
+ *   查询词因此可命中词内任意位置，如 phone 命中 iPhone、book 命中 notebook（与原先的 contains() 子串匹配一致，
+ *   但不跨词：查询串按空白与标点切分后各词分别匹配）
+ * - 空白与标点作为分隔符
+ */
+final class SearchTokenizer {
+    // 拉丁词索引的最长子串；更长的查询词截断到该长度（可能多出少量命中）
+    static final int MAX_SUBSTRING = 24;
+
+    private SearchTokenizer() {}
+
+    /**
+     * 索引侧分词，累加每个词项的权重
+     * @param text 待索引文本
+     * @param weight 每次出现累加的权重
+     * @param out 词项 -> 权重
+     */
+    static void indexTokens(String text, int weight, Map<String, Integer> out) {
+        if (text == null || text.isEmpty()) return;
+        StringBuilder word = new StringBuilder();
+        int prevCjk = -1;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                flushWord(word, weight, out);
+                out.merge(new String(Character.toChars(cp)), weight, Integer::sum);
+                if (prevCjk >= 0) {
+                    out.merge(new StringBuilder(4).appendCodePoint(prevCjk).appendCodePoint(cp).toString(), weight, Integer::sum);
+                }
+                prevCjk = cp;
+            } else if (Character.isLetterOrDigit(cp)) {
+                prevCjk = -1;
+                word.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                prevCjk = -1;
+                flushWord(word, weight, out);
+            }
+        }
+        flushWord(word, weight, out);
+    }
+
+    private static void flushWord(StringBuilder word, int weight, Map<String, Integer> out) {
+        if (word.length() == 0) return;
+        // 同一词内重复出现的子串只计一次
+        Set<String> seen = new HashSet<>();
+        for (int start = 0; start < word.length(); start++) {
+            int max = Math.min(word.length(), start + MAX_SUBSTRING);
+            for (int end = start + 1; end <= max; end++) {
+                String sub = word.substring(start, end);
+                if (seen.add(sub)) out.merge(sub, weight, Integer::sum);
+            }
+        }
+        word.setLength(0);
+    }
+
+    /**
+     * 查询侧分词：结果中的每个词项都必须命中（AND 语义）
+     * @param query 查询串
+     * @return 去重后的词项
+     */
+    static List<String> queryTokens(String query) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (query == null) return new ArrayList<>(tokens);
+        StringBuilder word = new StringBuilder();
+        List<Integer> run = new ArrayList<>();
+        for (int i = 0; i < query.length(); ) {
+            int cp = query.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                addWord(word, tokens);
+                run.add(cp);
+            } else {
+                addRun(run, tokens);
+                if (Character.isLetterOrDigit(cp)) {
+                    word.appendCodePoint(Character.toLowerCase(cp));
+                } else {
+                    addWord(word, tokens);
+                }
+            }
+        }
+        addWord(word, tokens);
+        addRun(run, tokens);
+        return new ArrayList<>(tokens);
+    }
+
+    private static void addWord(StringBuilder word, Set<String> tokens) {
+        if (word.length() == 0) return;
+        tokens.add(word.length() > MAX_SUBSTRING ? word.substring(0, MAX_SUBSTRING) : word.toString());
+        word.setLength(0);
+    }
+
+    private static void addRun(List<Integer> run, Set<String> tokens) {
+        if (run.isEmpty()) return;
+        if (run.size() == 1) {
+            tokens.add(new String(Character.toChars(run.get(0))));
+        } else {
+            for (int i = 0; i + 1 < run.size(); i++) {
+                tokens.add(new StringBuilder(4).appendCodePoint(run.get(i)).appendCodePoint(run.get(i + 1)).toString());
+            }
+        }
+        run.clear();
+    }
+
+    static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,157 @@
+package com.shopping.server.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 库存预占引擎：每个 SKU 一个原子计数器，通过 CAS 扣减，不使用全局锁。
+ * 一个订单的所有行要么全部预占成功，要么全部回滚（已扣减的行立即归还）。
+ */
+public class StockEngine {
+
+    /** 订单行：商品ID + 数量 */
+    public static final class Line {
+        private final long productId;
+        private final int quantity;
+
+        public Line(long productId, int quantity) {
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+        public long getProductId() { return productId; }
+        public int getQuantity() { return quantity; }
+    }
+
+    /** 一次成功的预占；订单创建失败时调用 {@link #release()} 归还库存 */
+    public static final class Reservation {
+        private final List<CatalogProduct> products;
+        private final int[] quantities;
+        private final StockEngine engine;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Reservation(List<CatalogProduct> products, int[] quantities, StockEngine engine) {
+            this.products = products;
+            this.quantities = quantities;
+            this.engine = engine;
+        }
+
+        /** @return 预占涉及的商品（按商品ID升序，同一商品已合并） */
+        public List<CatalogProduct> getProducts() { return products; }
+
+        /** @return 按当前商品单价计算的总价 */
+        public double totalPrice() {
+            double total = 0.0;
+            for (int i = 0; i < products.size(); i++) total += products.get(i).getPrice() * quantities[i];
+            return total;
+        }
+
+        /**
+         * 归还预占的库存，重复调用无副作用
+         */
+        public void release() {
+            if (!released.compareAndSet(false, true)) return;
+            for (int i = 0; i < products.size(); i++) {
+                products.get(i).stockCounter().addAndGet(quantities[i]);
+            }
+            engine.changed(products);
+        }
+    }
+
+    private final ProductCatalog catalog;
+    // 任一商品库存变化后递增
+    private final AtomicLong version = new AtomicLong();
+    private final List<StockListener> listeners = new CopyOnWriteArrayList<>();
+
+    public StockEngine(ProductCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * 注册库存变化监听（库存推送等）；预占成功、归还、补充库存后按商品回调
+     * @param listener 监听器
+     */
+    public void addListener(StockListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return 库存版本号，预占、归还、补充库存后递增
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * 原子地预占一个订单的全部行
+     * @param lines 订单行（同一商品可出现多次，会合并计算）
+     * @return 预占结果；任一商品不存在、数量非法或库存不足时返回 null，且不留下任何扣减
+     */
+    public Reservation reserve(List<Line> lines) {
+        if (lines.isEmpty()) return null;
+        // 按商品ID排序并合并同一商品，保证每个计数器只扣减一次
+        List<Line> sorted = new ArrayList<>(lines);
+        sorted.sort((a, b) -> Long.compare(a.productId, b.productId));
+        List<CatalogProduct> products = new ArrayList<>(sorted.size());
+        int[] quantities = new int[sorted.size()];
+        int n = 0;
+        for (Line line : sorted) {
+            if (line.quantity < 1) return null;
+            if (n > 0 && products.get(n - 1).getProductId() == line.productId) {
+                // 合并后的数量按 long 计算，超过 int 范围视为非法（否则溢出为负数会变成加库存）
+                long merged = (long) quantities[n - 1] + line.quantity;
+                if (merged > Integer.MAX_VALUE) return null;
+                quantities[n - 1] = (int) merged;
+                continue;
+            }
+            CatalogProduct p = catalog.get(line.productId);
+            if (p == null) return null;
+            products.add(p);
+            quantities[n++] = line.quantity;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!tryTake(products.get(i).stockCounter(), quantities[i])) {
+                // 回滚已扣减的行
+                for (int j = 0; j < i; j++) products.get(j).stockCounter().addAndGet(quantities[j]);
+                return null;
+            }
+        }
+        changed(products);
+        return new Reservation(products, quantities, this);
+    }
+
+    /**
+     * 补充库存（退货、入库等）
+     * @param productId 商品ID
+     * @param quantity 补充数量
+     * @return 补充后的库存，商品不存在时返回 -1
+     */
+    public int restock(long productId, int quantity) {
+        CatalogProduct p = catalog.get(productId);
+        if (p == null) return -1;
+        int stock = p.stockCounter().addAndGet(quantity);
+        changed(Collections.singletonList(p));
+        return stock;
+    }
+
+    private void changed(List<CatalogProduct> products) {
+        version.incrementAndGet();
+        for (StockListener l : listeners) {
+            for (CatalogProduct p : products) l.onStockChanged(p.getProductId());
+        }
+    }
+
+    private static boolean tryTake(AtomicInteger counter, int quantity) {
+        if (quantity < 1) return false;
+        for (;;) {
+            int cur = counter.get();
+            if (cur < quantity) return false;
+            if (counter.compareAndSet(cur, cur - quantity)) return true;
+        }
+    }
+}
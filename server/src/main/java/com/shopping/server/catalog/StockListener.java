@@ -0,0 +1,11 @@
+package com.shopping.server.catalog;
+
+/**
+ * 库存变化监听。回调在预占、归还、补充库存的调用线程上同步执行，实现方不应阻塞。
+ */
+public interface StockListener {
+    /**
+     * @param productId 库存已变化的商品ID
+     */
+    void onStockChanged(long productId);
+}
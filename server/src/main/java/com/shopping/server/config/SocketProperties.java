@@ -0,0 +1,146 @@
+package com.shopping.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Socket 服务配置（application.yml 中 socket.* 前缀）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "socket")
+public class SocketProperties {
+
+    private Transport transport = new Transport();
+    private Business business = new Business();
+    private Journal journal = new Journal();
+    private Session session = new Session();
+    private Orders orders = new Orders();
+    private Recommendations recommendations = new Recommendations();
+    private StockPush stockPush = new StockPush();
+    private Metrics metrics = new Metrics();
+
+    /**
+     * 网络传输：监听端口、I/O 线程与 TCP 参数、ByteBuf 内存池。
+     * Linux 上优先使用 epoll 原生传输（不可用时回退到 NIO）。
+     */
+    @Data
+    public static class Transport {
+        // socket 监听端口（与 Web 端口 server.port 不同）
+        private int port = 8080;
+        // 是否在可用时使用 epoll 原生传输
+        private boolean nativeTransport = true;
+        // accept 线程数
+        private int bossThreads = 1;
+        // I/O 线程数，<= 0 时取 CPU 核数 * 2
+        private int workerThreads = 0;
+        // 等待 accept 的连接队列长度（受 net.core.somaxconn 限制）
+        private int backlog = 1024;
+        private boolean tcpNoDelay = true;
+        // 用 SO_REUSEPORT 绑定多个监听 socket，由内核在其间分配新连接（仅 epoll）
+        private boolean reusePort = false;
+        // reusePort 时的监听 socket 数，每个由一个 accept 线程处理；<= 0 时取 bossThreads
+        private int acceptors = 0;
+        // 写缓冲水位（字节）：超过高水位后连接不可写，降到低水位后恢复
+        private int writeBufferLowWaterMark = 32 * 1024;
+        private int writeBufferHighWaterMark = 64 * 1024;
+        private Allocator allocator = new Allocator();
+    }
+
+    /**
+     * 连接使用的池化 ByteBuf 分配器，<= 0 的参数使用 Netty 默认值
+     */
+    @Data
+    public static class Allocator {
+        // 优先分配直接内存（读写 socket 时免去一次拷贝）
+        private boolean preferDirect = true;
+        // 直接内存 arena 数，通常取 I/O 线程数，减少线程间竞争
+        private int directArenas = 0;
+        private int heapArenas = 0;
+        // 页大小与 chunk 阶数：chunk = pageSize << maxOrder
+        private int pageSize = 0;
+        private int maxOrder = 0;
+        // 非 I/O 线程（业务线程）是否也使用线程本地缓存
+        private boolean useCacheForAllThreads = true;
+    }
+
+    /**
+     * 业务线程池：消息处理从 Netty I/O 线程转移到这里执行。
+     * 每个连接固定绑定一个业务线程，保证同一连接内请求按序处理。
+     */
+    @Data
+    public static class Business {
+        // 是否启用业务线程池；关闭时在 I/O 线程上直接处理（仅用于调试）
+        private boolean enabled = true;
+        // 业务线程数，<= 0 时取 CPU 核数 * 2
+        private int threads = 0;
+        // 每个业务线程的最大排队任务数，超出后直接拒绝并返回 1003
+        private int maxPendingTasks = 10000;
+    }
+
+    /**
+     * 变更日志：购物车/订单/用户的每次变更追加写入 server-data/journal，
+     * 后台批量刷盘，并定期把全量状态压缩为 server-data/*.json 快照。
+     */
+    @Data
+    public static class Journal {
+        // 未 fsync 记录的最长停留时间（毫秒）；0 表示每批写入都 fsync，-1 表示不主动 fsync
+        private long fsyncIntervalMs = 200;
+        // 未 fsync 的记录数达到该值时立即 fsync
+        private int fsyncBatch = 256;
+        // 快照（日志压缩）间隔（毫秒）；<= 0 表示只在停机时做快照
+        private long snapshotIntervalMs = 300000;
+    }
+
+    /**
+     * 连接会话
+     */
+    @Data
+    public static class Session {
+        // 连接在该时长内既无读也无写则关闭并解绑会话（秒）；<= 0 表示不淘汰
+        private int idleTimeoutSeconds = 1800;
+    }
+
+    /**
+     * 订单存储
+     */
+    @Data
+    public static class Orders {
+        // 写满的订单段是否转储到 server-data/order-segments 并以内存映射方式读取，以减少堆占用
+        private boolean spillSealedSegments = false;
+    }
+
+    /**
+     * 商品推荐
+     */
+    @Data
+    public static class Recommendations {
+        // 有新订单时重算推荐模型的最小间隔（毫秒）
+        private long rebuildIntervalMs = 10000;
+        // 每个商品保留的相似商品数
+        private int neighbors = 20;
+    }
+
+    /**
+     * 库存变化推送（subscribe_stock / 购物车与商品详情自动订阅）
+     */
+    @Data
+    public static class StockPush {
+        // 同一连接两次 stock_update 的最小间隔（毫秒），期间的变化合并为一条
+        private long minIntervalMs = 200;
+        // 每个连接最多订阅的商品数
+        private int maxSubscriptions = 256;
+    }
+
+    /**
+     * 请求指标（/actuator/prometheus）与请求日志
+     */
+    @Data
+    public static class Metrics {
+        // 延迟分位数的统计窗口（秒）
+        private long windowSeconds = 60;
+        // 每多少个请求抽样记录一条请求日志（DEBUG 级别），<= 0 表示不记录
+        private int logSampleRate = 100;
+    }
+}
@@ -0,0 +1,20 @@
+package com.shopping.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 订单列表项（JPQL 构造器投影，只取列表需要的列，不加载实体）
+ */
+@Getter
+@AllArgsConstructor
+public class OrderSummary {
+    private final Long id;
+    private final LocalDateTime createdAt;
+    private final String status;
+    private final BigDecimal totalPrice;
+    private final Long itemCount;
+}
@@ -9,8 +9,10 @@ import java.math.BigDecimal;
 @Table(name = "cart_items",
        uniqueConstraints = @UniqueConstraint(columnNames = {"client_id", "product_id"}))
 public class CartItem {
+    // 号段分配主键，整车保存时可以批量插入
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cart_item_seq")
+    @SequenceGenerator(name = "cart_item_seq", sequenceName = "cart_item_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
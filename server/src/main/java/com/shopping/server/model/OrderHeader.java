@@ -9,10 +9,12 @@ import java.util.List;
 
 @Data
 @Entity
-@Table(name = "order_headers")
+// (client_id, created_at, id) 复合索引支撑按客户的订单历史键集分页
+@Table(name = "order_headers",
+       indexes = @Index(name = "idx_order_headers_client_created", columnList = "client_id, created_at, id"))
 public class OrderHeader {
+    // 订单号由内存订单存储分配（与 socket 协议中的 orderId 一致），插入前赋值
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -22,7 +24,7 @@ public class OrderHeader {
     @Column(nullable = false)
     private BigDecimal totalPrice;
 
-    @Column(nullable = false)
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
     @Column(nullable = false)
@@ -2,11 +2,19 @@ package com.shopping.server.model;
 
 import javax.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.math.BigDecimal;
 
 @Data
 @Entity
-@Table(name = "products")
+// (price, product_id) / (stock, product_id) 支撑按价格、库存排序的键集分页
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_price", columnList = "price, productId"),
+        @Index(name = "idx_products_stock", columnList = "stock, productId")})
+// 商品读多写少：启用二级缓存，按ID加载（含关联懒加载）不再访问数据库
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product")
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,317 @@
+package com.shopping.server.order;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 分段追加的订单存储。
+ * 订单按槽位顺序写入固定大小的段，追加只需原子地领取一个槽位，不复制已有数据；
+ * 段写满后封存，可选地转储为内存映射文件，释放堆内存。
+ *
+ * 订单ID与槽位一一对应：启动时恢复的订单按ID升序占据前 r 个槽位（ID 可能不连续，按二分查找定位），
+ * 之后新订单的 ID = 首个新ID + (槽位 - r)，首个新ID 为恢复订单的最大ID + 1，按ID读取为 O(1)。
+ */
+public class OrderLog {
+    private static final Logger LOG = LoggerFactory.getLogger(OrderLog.class);
+
+    private static final TypeReference<Map<String, Object>> ORDER_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    /** 已转储到内存映射文件的封存段（只读，改动记录在 overlay 中） */
+    private static final class Spilled {
+        final MappedByteBuffer buf;
+        // 第 i 个订单位于 [offsets[i], offsets[i+1])，长度为 0 表示空槽
+        final int[] offsets;
+        final Map<Integer, Map<String, Object>> overlay = new ConcurrentHashMap<>();
+
+        Spilled(MappedByteBuffer buf, int[] offsets) {
+            this.buf = buf;
+            this.offsets = offsets;
+        }
+
+        byte[] raw(int i) {
+            int len = offsets[i + 1] - offsets[i];
+            if (len == 0) return null;
+            byte[] bytes = new byte[len];
+            buf.duplicate().position(offsets[i]).get(bytes);
+            return bytes;
+        }
+    }
+
+    private static final class Segment {
+        volatile AtomicReferenceArray<Map<String, Object>> slots;
+        volatile Spilled spilled;
+        // 已写入的槽位数，达到段大小即封存
+        final AtomicInteger done = new AtomicInteger();
+
+        Segment(int size) {
+            slots = new AtomicReferenceArray<>(size);
+        }
+    }
+
+    private final int segmentSize;
+    private final ObjectMapper mapper;
+    private volatile Segment[] segments = new Segment[0];
+    private final AtomicLong nextSlot = new AtomicLong();
+    // 启动时恢复的订单ID（升序），占据槽位 [0, recovered.length)
+    private long[] recovered = new long[0];
+    private volatile long firstNewId = 1;
+    private volatile Path spillDir;
+
+    public OrderLog(int segmentSize, ObjectMapper mapper) {
+        this.segmentSize = segmentSize;
+        this.mapper = mapper;
+    }
+
+    /**
+     * 载入已持久化的订单，必须在第一次 {@link #allocate()} 之前调用
+     * @param orders 订单（需带数字 orderId，同ID只保留最后一个）
+     */
+    public synchronized void recover(Collection<Map<String, Object>> orders) {
+        if (nextSlot.get() != 0) throw new IllegalStateException("recover() after allocate()");
+        List<Map<String, Object>> sorted = new ArrayList<>(orders.size());
+        for (Map<String, Object> o : orders) if (o.get("orderId") instanceof Number) sorted.add(o);
+        sorted.sort((a, b) -> Long.compare(idOf(a), idOf(b)));
+        long[] ids = new long[sorted.size()];
+        int n = 0;
+        for (Map<String, Object> o : sorted) {
+            if (n > 0 && ids[n - 1] == idOf(o)) n--;
+            ids[n] = idOf(o);
+            sorted.set(n++, o);
+        }
+        recovered = Arrays.copyOf(ids, n);
+        for (int slot = 0; slot < n; slot++) {
+            segmentFor(slot).slots.set(slot % segmentSize, sorted.get(slot));
+            complete(slot);
+        }
+        nextSlot.set(n);
+        firstNewId = n == 0 ? 1 : recovered[n - 1] + 1;
+    }
+
+    /**
+     * 领取下一个订单ID，随后调用 {@link #publish} 写入订单；未写入的ID留空（所在段不会被封存）
+     * @return 新订单ID
+     */
+    public long allocate() {
+        long slot = nextSlot.getAndIncrement();
+        segmentFor(slot);
+        return firstNewId + (slot - recovered.length);
+    }
+
+    /**
+     * 写入已领取ID的订单
+     * @param orderId {@link #allocate()} 返回的ID
+     * @param order 订单
+     */
+    public void publish(long orderId, Map<String, Object> order) {
+        long slot = slotOf(orderId);
+        segments[(int) (slot / segmentSize)].slots.set((int) (slot % segmentSize), order);
+        complete(slot);
+    }
+
+    /**
+     * 放弃已领取但未写入的ID（如订单落库失败），槽位留空，不影响所在段封存
+     * @param orderId {@link #allocate()} 返回的ID
+     */
+    public void abandon(long orderId) {
+        complete(slotOf(orderId));
+    }
+
+    /**
+     * 订单被原地修改后写回（已转储的段需要记录改动）
+     * @param orderId 订单ID
+     * @param order 修改后的订单
+     */
+    public void replace(long orderId, Map<String, Object> order) {
+        long slot = slotOf(orderId);
+        if (slot < 0 || slot >= nextSlot.get()) return;
+        Segment seg = segments[(int) (slot / segmentSize)];
+        int i = (int) (slot % segmentSize);
+        synchronized (seg) {
+            if (seg.spilled != null) seg.spilled.overlay.put(i, order);
+            else seg.slots.set(i, order);
+        }
+    }
+
+    /**
+     * 按ID读取订单；已转储段中的订单每次读取都会反序列化出新的 Map
+     * @param orderId 订单ID
+     * @return 订单，不存在返回 null
+     */
+    public Map<String, Object> get(long orderId) {
+        long slot = slotOf(orderId);
+        if (slot < 0 || slot >= nextSlot.get()) return null;
+        Segment[] segs = segments;
+        int s = (int) (slot / segmentSize);
+        if (s >= segs.length) return null;
+        return read(segs[s], (int) (slot % segmentSize));
+    }
+
+    /**
+     * 按ID升序遍历全部订单
+     * @param action 处理函数
+     */
+    public void forEach(Consumer<Map<String, Object>> action) {
+        long end = nextSlot.get();
+        Segment[] segs = segments;
+        for (long slot = 0; slot < end; slot++) {
+            int s = (int) (slot / segmentSize);
+            if (s >= segs.length) break;
+            Map<String, Object> o = read(segs[s], (int) (slot % segmentSize));
+            if (o != null) action.accept(o);
+        }
+    }
+
+    /**
+     * 以 JSON 数组写出全部订单（快照用）；已转储段的订单直接拷贝原始字节，不反序列化
+     * @param gen JSON 生成器
+     */
+    public void writeTo(JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        long end = nextSlot.get();
+        Segment[] segs = segments;
+        for (long slot = 0; slot < end; slot++) {
+            int s = (int) (slot / segmentSize);
+            if (s >= segs.length) break;
+            Segment seg = segs[s];
+            int i = (int) (slot % segmentSize);
+            Spilled sp = seg.spilled;
+            if (sp != null && !sp.overlay.containsKey(i)) {
+                byte[] raw = sp.raw(i);
+                if (raw != null) gen.writeRawValue(new String(raw, StandardCharsets.UTF_8));
+                continue;
+            }
+            Map<String, Object> o = read(seg, i);
+            if (o != null) gen.writeObject(o);
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * 开启封存段转储：之后（以及当前已封存的）段写入 dir 下的文件并以只读内存映射访问。
+     * 这些文件只是堆外缓存，持久化仍以快照 + 变更日志为准，开启时会清空目录中的旧文件
+     * @param dir 转储目录
+     */
+    public synchronized void enableSpill(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                if (p.getFileName().toString().endsWith(".seg")) Files.deleteIfExists(p);
+            }
+        }
+        spillDir = dir;
+        Segment[] segs = segments;
+        for (int s = 0; s < segs.length; s++) {
+            if (segs[s].done.get() == segmentSize) spill(s, segs[s]);
+        }
+    }
+
+    /** @return 已分配的订单ID数（含空槽） */
+    public long size() {
+        return nextSlot.get();
+    }
+
+    private Map<String, Object> read(Segment seg, int i) {
+        Spilled sp = seg.spilled;
+        if (sp == null) {
+            AtomicReferenceArray<Map<String, Object>> slots = seg.slots;
+            if (slots != null) return slots.get(i);
+            sp = seg.spilled;
+        }
+        Map<String, Object> changed = sp.overlay.get(i);
+        if (changed != null) return changed;
+        byte[] raw = sp.raw(i);
+        if (raw == null) return null;
+        try {
+            return mapper.readValue(raw, ORDER_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long slotOf(long orderId) {
+        long[] rec = recovered;
+        if (orderId >= firstNewId) return rec.length + (orderId - firstNewId);
+        int pos = Arrays.binarySearch(rec, orderId);
+        return pos >= 0 ? pos : -1;
+    }
+
+    private Segment segmentFor(long slot) {
+        int s = (int) (slot / segmentSize);
+        Segment[] segs = segments;
+        if (s < segs.length) return segs[s];
+        synchronized (this) {
+            segs = segments;
+            if (s >= segs.length) {
+                // 只复制段指针数组，段内数据不动
+                Segment[] grown = Arrays.copyOf(segs, Math.max(s + 1, segs.length * 2));
+                for (int k = segs.length; k < grown.length; k++) grown[k] = new Segment(segmentSize);
+                segments = grown;
+                segs = grown;
+            }
+            return segs[s];
+        }
+    }
+
+    private void complete(long slot) {
+        int s = (int) (slot / segmentSize);
+        Segment seg = segments[s];
+        if (seg.done.incrementAndGet() == segmentSize && spillDir != null) spill(s, seg);
+    }
+
+    private void spill(int index, Segment seg) {
+        Path dir = spillDir;
+        if (dir == null) return;
+        synchronized (seg) {
+            if (seg.spilled != null) return;
+            try {
+                AtomicReferenceArray<Map<String, Object>> slots = seg.slots;
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(segmentSize * 256);
+                int[] offsets = new int[segmentSize + 1];
+                for (int i = 0; i < segmentSize; i++) {
+                    Map<String, Object> o = slots.get(i);
+                    if (o != null) bytes.write(mapper.writeValueAsBytes(o));
+                    offsets[i + 1] = bytes.size();
+                }
+                Path file = dir.resolve(String.format("orders-%06d.seg", index));
+                Files.write(file, bytes.toByteArray());
+                MappedByteBuffer buf;
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                }
+                seg.spilled = new Spilled(buf, offsets);
+                seg.slots = null;
+            } catch (IOException e) {
+                // 转储失败时该段继续留在堆内
+                LOG.warn("Order segment spill failed", e);
+            }
+        }
+    }
+
+    private static long idOf(Map<String, Object> order) {
+        return ((Number) order.get("orderId")).longValue();
+    }
+}
@@ -0,0 +1,146 @@
+package com.shopping.server.order;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+/**
+ * 按用户分桶的订单索引：每个用户只保存订单ID（升序），订单本身按ID从订单存储读取；查询从新到旧，
+ * 以订单ID作为游标分页。查询代价只与该用户的订单数有关，与全局订单量无关。
+ * 过滤条件与 OrderRepository 的 findByClientClientIdAndStatus / findByClientClientIdAndOrderTimeBetween 一致。
+ */
+public class UserOrderIndex {
+
+    /** 一页查询结果 */
+    public static final class Page {
+        private final List<Map<String, Object>> orders;
+        private final long nextCursor;
+
+        Page(List<Map<String, Object>> orders, long nextCursor) {
+            this.orders = orders;
+            this.nextCursor = nextCursor;
+        }
+
+        /** @return 本页订单（新到旧） */
+        public List<Map<String, Object>> getOrders() { return orders; }
+
+        /** @return 下一页游标（本页最后一个订单的ID），没有更多时为 -1 */
+        public long getNextCursor() { return nextCursor; }
+    }
+
+    /** 单个用户的订单ID，升序 */
+    private static final class Bucket {
+        long[] ids = new long[4];
+        int size;
+
+        synchronized void add(long id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            // 订单号递增，通常直接追加在末尾；并发下单时可能需要向前挪动几位
+            int pos = size;
+            while (pos > 0 && ids[pos - 1] > id) pos--;
+            if (pos > 0 && ids[pos - 1] == id) return;
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        synchronized long[] ids(long before) {
+            return Arrays.copyOf(ids, before > 0 ? lowerBound(before) : size);
+        }
+
+        // 第一个 >= id 的位置
+        private int lowerBound(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+    }
+
+    private final Map<String, Bucket> byUser = new ConcurrentHashMap<>();
+    private final LongFunction<Map<String, Object>> lookup;
+
+    /**
+     * @param lookup 按订单ID读取订单
+     */
+    public UserOrderIndex(LongFunction<Map<String, Object>> lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * 登记订单
+     * @param username 下单用户
+     * @param orderId 订单ID
+     */
+    public void add(String username, long orderId) {
+        if (username == null) return;
+        byUser.computeIfAbsent(username, k -> new Bucket()).add(orderId);
+    }
+
+    /**
+     * 查询用户订单，从新到旧
+     * @param username 用户名
+     * @param before 游标：只返回订单ID小于该值的订单，&lt;= 0 表示从最新开始
+     * @param limit 每页条数，&lt;= 0 表示不限
+     * @param status 订单状态过滤，null 表示不限
+     * @param from 下单时间下限（含），null 表示不限
+     * @param to 下单时间上限（含），null 表示不限
+     * @return 本页订单与下一页游标
+     */
+    public Page page(String username, long before, int limit, String status, Instant from, Instant to) {
+        Bucket bucket = username == null ? null : byUser.get(username);
+        if (bucket == null) return new Page(new ArrayList<>(), -1);
+        long[] ids = bucket.ids(before);
+        List<Map<String, Object>> out = new ArrayList<>(limit > 0 ? Math.min(limit, ids.length) : ids.length);
+        long last = -1;
+        for (int i = ids.length - 1; i >= 0; i--) {
+            Map<String, Object> o = lookup.apply(ids[i]);
+            if (o == null || !matches(o, status, from, to)) continue;
+            // 本页已满且还有匹配项：以本页最后一条作为下一页游标
+            if (limit > 0 && out.size() == limit) return new Page(out, last);
+            out.add(o);
+            last = ids[i];
+        }
+        return new Page(out, -1);
+    }
+
+    /**
+     * @param username 用户名
+     * @return 该用户全部订单ID（升序）
+     */
+    public long[] orderIds(String username) {
+        Bucket bucket = username == null ? null : byUser.get(username);
+        return bucket == null ? new long[0] : bucket.ids(0);
+    }
+
+    /**
+     * 用户改名：整桶迁移到新用户名下
+     * @param oldUsername 原用户名
+     * @param newUsername 新用户名
+     */
+    public void rename(String oldUsername, String newUsername) {
+        Bucket bucket = byUser.remove(oldUsername);
+        if (bucket == null) return;
+        Bucket existing = byUser.putIfAbsent(newUsername, bucket);
+        if (existing != null) {
+            for (long id : bucket.ids(0)) existing.add(id);
+        }
+    }
+
+    private static boolean matches(Map<String, Object> order, String status, Instant from, Instant to) {
+        if (status != null && !status.equals(order.get("status"))) return false;
+        if (from == null && to == null) return true;
+        Object t = order.get("order_time");
+        if (t == null) return false;
+        Instant time;
+        try {
+            time = Instant.parse(t.toString());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+        return (from == null || !time.isBefore(from)) && (to == null || !time.isAfter(to));
+    }
+}
@@ -0,0 +1,331 @@
+package com.shopping.server.persist;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 追加写的变更日志（write-behind）。
+ * 每次变更只追加一行 JSON：{"op": ..., "key": ..., "value": ...}，写入代价与变更大小成正比。
+ * 调用方在同一键的锁内读取当前值、序列化并入队，同一键的记录按读取顺序入队，最后一条总是最新状态；
+ * 由后台线程批量写入（group commit），按条数/时间间隔合并 fsync。
+ * 队列有界：写线程跟不上时调用方等待，写线程停止（磁盘错误）后拒绝新的变更。
+ * 定期把内存全量状态写成快照并轮换日志段，启动时回放"快照 + 之后的日志段"。
+ *
+ * 日志记录必须是幂等的整值覆盖（put 完整值 / remove），因此快照与日志段的重叠部分重复回放不影响结果。
+ */
+public class ChangeJournal {
+
+    /** 写全量快照（由持有内存状态的一方实现，需保证每个文件原子替换） */
+    public interface Snapshotter {
+        void writeSnapshot() throws Exception;
+    }
+
+    /** 回放单条日志记录 */
+    public interface Replayer {
+        void apply(String op, String key, JsonNode value) throws Exception;
+    }
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // 记录最近一次快照之后的第一个日志段号，回放从该段开始
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    // 单次 group commit 最多合并的记录数
+    private static final int MAX_BATCH = 1024;
+    // 待写记录上限；队列满时调用方最多等待 APPEND_TIMEOUT_MS
+    private static final int MAX_PENDING = 64 * 1024;
+    private static final long APPEND_TIMEOUT_MS = 5000;
+    private static final int KEY_LOCKS = 64;
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeJournal.class);
+
+    private final Path dir;
+    private final ObjectMapper mapper;
+    private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>(MAX_PENDING);
+    // 按键分段的锁：同一键的"读取当前值 + 入队"互斥
+    private final Object[] keyLocks = new Object[KEY_LOCKS];
+
+    // 未 fsync 记录的最长停留时间；0 表示每批都 fsync，< 0 表示从不主动 fsync（交给操作系统）
+    private volatile long fsyncIntervalMs = 200;
+    // 累计这么多条未 fsync 的记录后立即 fsync
+    private volatile int fsyncBatch = 256;
+    // 快照间隔；<= 0 表示只在关闭时做快照
+    private volatile long snapshotIntervalMs = 5 * 60 * 1000L;
+
+    private Snapshotter snapshotter;
+    private Thread writer;
+    private volatile boolean running;
+
+    // 以下字段只由写线程访问
+    private long segment;
+    private FileChannel channel;
+    private OutputStream out;
+    private int unsynced;
+    private long lastSync;
+    private long lastSnapshot;
+    private long sinceSnapshot;
+
+    public ChangeJournal(Path dir, ObjectMapper mapper) {
+        this.dir = dir;
+        this.mapper = mapper;
+        for (int i = 0; i < KEY_LOCKS; i++) keyLocks[i] = new Object();
+    }
+
+    /**
+     * 调整刷盘与快照策略，可在运行中调用
+     * @param fsyncIntervalMs 未 fsync 记录的最长停留时间（毫秒）；0 每批 fsync，&lt; 0 不主动 fsync
+     * @param fsyncBatch 未 fsync 记录数达到该值时立即 fsync
+     * @param snapshotIntervalMs 快照间隔（毫秒），&lt;= 0 只在关闭时快照
+     */
+    public void configure(long fsyncIntervalMs, int fsyncBatch, long snapshotIntervalMs) {
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.fsyncBatch = Math.max(1, fsyncBatch);
+        this.snapshotIntervalMs = snapshotIntervalMs;
+    }
+
+    /**
+     * 按顺序回放检查点之后的全部日志段（应在加载快照之后、{@link #start} 之前调用）。
+     * 段尾因崩溃写了一半的记录会被忽略。
+     * @param replayer 记录处理
+     * @return 回放的记录数
+     */
+    public synchronized long replay(Replayer replayer) throws IOException {
+        if (!Files.isDirectory(dir)) return 0;
+        long from = readCheckpoint();
+        long count = 0;
+        for (long seg : listSegments()) {
+            Path file = segmentFile(seg);
+            if (seg < from) {
+                // 已被快照覆盖，上次删除前中断的残留
+                Files.deleteIfExists(file);
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    JsonNode rec;
+                    try {
+                        rec = mapper.readTree(line);
+                    } catch (IOException torn) {
+                        break;
+                    }
+                    try {
+                        replayer.apply(rec.path("op").asText(), rec.path("key").asText(null), rec.get("value"));
+                        count++;
+                    } catch (Exception e) {
+                        LOG.warn("Journal replay skipped record in {}: {}", file.getFileName(), e.getMessage());
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 打开新的日志段并启动后台写线程
+     * @param snapshotter 快照写入方
+     */
+    public synchronized void start(Snapshotter snapshotter) throws IOException {
+        if (running) return;
+        this.snapshotter = snapshotter;
+        Files.createDirectories(dir);
+        List<Long> existing = listSegments();
+        // 总是新开一段，不在可能写了一半的旧段尾部续写
+        segment = existing.isEmpty() ? Math.max(1, readCheckpoint()) : existing.get(existing.size() - 1) + 1;
+        openSegment();
+        lastSync = lastSnapshot = System.currentTimeMillis();
+        running = true;
+        writer = new Thread(this::writeLoop, "change-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 追加一个键的当前状态：在该键的锁内读取当前值并入队，值为 null 时记为删除。
+     * 变更之后调用；并发修改同一键时，最后入队的记录读取得最晚，回放后得到最新状态。
+     * @param kind 记录类别，如 cart，写为 cart.put / cart.remove
+     * @param key 记录键
+     * @param current 读取当前完整值（在锁内调用）
+     * @throws IllegalStateException 日志未运行（未启动或写线程已因磁盘错误停止）或队列持续已满
+     */
+    public void append(String kind, String key, Supplier<?> current) {
+        synchronized (keyLocks[(key.hashCode() & 0x7fffffff) % KEY_LOCKS]) {
+            Object value = current.get();
+            Map<String, Object> rec = new LinkedHashMap<>();
+            rec.put("op", kind + (value == null ? ".remove" : ".put"));
+            rec.put("key", key);
+            if (value != null) rec.put("value", value);
+            byte[] bytes;
+            try {
+                bytes = mapper.writeValueAsBytes(rec);
+            } catch (IOException e) {
+                throw new IllegalStateException("序列化变更记录失败: " + kind + " " + key, e);
+            }
+            enqueue(bytes);
+        }
+    }
+
+    private void enqueue(byte[] rec) {
+        if (!running) throw new IllegalStateException("变更日志未运行，拒绝写入");
+        try {
+            if (!queue.offer(rec, APPEND_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("变更日志写入积压，拒绝写入");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("变更日志写入被中断", e);
+        }
+    }
+
+    /**
+     * 停止写线程：写完并 fsync 队列中剩余记录，再做一次快照
+     */
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            t = writer;
+        }
+        try {
+            t.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (running || !queue.isEmpty()) {
+                byte[] first = queue.poll(unsynced > 0 ? 20 : 200, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                long now = System.currentTimeMillis();
+                long interval = fsyncIntervalMs;
+                if (unsynced > 0 && interval >= 0 && (unsynced >= fsyncBatch || now - lastSync >= interval)) {
+                    sync(now);
+                }
+                long snapEvery = snapshotIntervalMs;
+                if (snapEvery > 0 && sinceSnapshot > 0 && now - lastSnapshot >= snapEvery) {
+                    snapshot(now);
+                }
+            }
+            if (unsynced > 0) sync(System.currentTimeMillis());
+            if (sinceSnapshot > 0) snapshot(System.currentTimeMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 磁盘错误：停止接收变更，之后的 append 直接失败而不是在内存中堆积
+            running = false;
+            LOG.error("Journal writer stopped, rejecting further changes", e);
+        } finally {
+            try { out.close(); } catch (IOException ignore) {}
+        }
+    }
+
+    private void writeBatch(List<byte[]> batch) throws IOException {
+        for (byte[] rec : batch) {
+            out.write(rec);
+            out.write('\n');
+        }
+        out.flush();
+        unsynced += batch.size();
+        sinceSnapshot += batch.size();
+        if (fsyncIntervalMs == 0) sync(System.currentTimeMillis());
+    }
+
+    private void sync(long now) throws IOException {
+        channel.force(false);
+        unsynced = 0;
+        lastSync = now;
+    }
+
+    /**
+     * 轮换日志段后写快照：新段之后的记录可能已包含在快照中，回放时幂等覆盖即可
+     */
+    private void snapshot(long now) throws IOException {
+        sync(now);
+        out.close();
+        long first = ++segment;
+        openSegment();
+        lastSnapshot = now;
+        sinceSnapshot = 0;
+        try {
+            snapshotter.writeSnapshot();
+        } catch (Exception e) {
+            // 快照失败时不推进检查点，旧段保留，回放仍然完整
+            LOG.warn("Journal snapshot failed", e);
+            return;
+        }
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(tmp, Long.toString(first).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (long seg : listSegments()) {
+            if (seg < first) Files.deleteIfExists(segmentFile(seg));
+        }
+    }
+
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(segmentFile(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) return 0;
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(p -> {
+                String name = p.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException ignore) {}
+                }
+            });
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path segmentFile(long seg) {
+        return dir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, seg, SEGMENT_SUFFIX));
+    }
+}
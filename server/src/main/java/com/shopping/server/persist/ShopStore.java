@@ -0,0 +1,56 @@
+package com.shopping.server.persist;
+
+import com.shopping.server.catalog.CatalogProduct;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * socket 服务的数据库持久化（write-through），替代 server-data 下的 JSON 快照 + 变更日志。
+ * 启动时一次性加载全部数据到内存结构，之后读请求只访问内存，写请求同步写库后再对外可见。
+ * 数据结构沿用内存侧的 Map 形式（与快照文件内容一致），未登录用户的购物车/订单归到 "__anon__"。
+ */
+public interface ShopStore {
+
+    /**
+     * 加载商品目录；库中没有商品时先写入 seed（保留其商品ID）
+     * @param seed 预置商品
+     * @return 库中全部商品
+     */
+    List<CatalogProduct> loadCatalog(List<CatalogProduct> seed);
+
+    /** @return 用户名 -> 密码 */
+    Map<String, String> loadUsers();
+
+    /** @return 用户名 -> 资料（phone 等） */
+    Map<String, Map<String, Object>> loadProfiles();
+
+    /** @return 用户名 -> 购物车条目（字段同 CatalogProduct.toMap） */
+    Map<String, List<Map<String, Object>>> loadCarts();
+
+    /** @return 全部订单（orderId、username、items、total_price、status、order_time），按订单ID升序 */
+    List<Map<String, Object>> loadOrders();
+
+    /**
+     * 新增或更新用户（密码与资料）
+     */
+    void saveUser(String username, String password, Map<String, Object> profile);
+
+    /**
+     * 用户改名：只改 clients 表的用户名，购物车与订单通过 client_id 关联，随之迁移
+     */
+    void renameUser(String oldUsername, String newUsername);
+
+    /**
+     * 整车覆盖保存购物车（先删后批量插入）
+     * @param cartKey 用户名或 "__anon__"
+     * @param items 购物车条目，null 表示清空
+     */
+    void saveCart(String cartKey, List<Map<String, Object>> items);
+
+    /**
+     * 插入新订单（订单头 + 订单行）并扣减库中库存，同一事务、批量写入
+     * @param order 内存订单（已分配 orderId）
+     */
+    void insertOrder(Map<String, Object> order);
+}
@@ -0,0 +1,105 @@
+package com.shopping.server.recommend;
+
+import io.netty.util.collection.LongObjectHashMap;
+
+/**
+ * 商品共同购买次数的稀疏矩阵：每个商品一行，行内是 商品ID -> 同单出现次数 的开放寻址表（long[] + int[]），
+ * 不装箱。另记录每个商品出现在多少个订单中，用于归一化和热门兜底。
+ * 非线程安全：只由推荐引擎的后台线程写入和读取。
+ */
+final class CoPurchaseMatrix {
+
+    /** long 键 -> int 计数的开放寻址表；键必须为正数（0 表示空槽） */
+    static final class Row {
+        private long[] keys = new long[8];
+        private int[] counts = new int[8];
+        private int size;
+
+        void increment(long key) {
+            if ((size + 1) * 4 > keys.length * 3) grow();
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+            if (keys[i] == 0) {
+                keys[i] = key;
+                size++;
+            }
+            counts[i]++;
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0) {
+                if (keys[i] == key) return counts[i];
+                i = (i + 1) & mask;
+            }
+            return 0;
+        }
+
+        int size() { return size; }
+
+        /** 遍历用：槽位数组，空槽键为 0 */
+        long[] keys() { return keys; }
+        int[] counts() { return counts; }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                long k = oldKeys[j];
+                if (k == 0) continue;
+                int i = mix(k) & mask;
+                while (keys[i] != 0) i = (i + 1) & mask;
+                keys[i] = k;
+                counts[i] = oldCounts[j];
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private final LongObjectHashMap<Row> rows = new LongObjectHashMap<>();
+    // 商品 -> 包含该商品的订单数
+    private final Row orderCounts = new Row();
+
+    /**
+     * 累加一个订单
+     * @param items 订单中的商品ID（已去重，均为正数）
+     */
+    void addOrder(long[] items) {
+        for (long a : items) {
+            orderCounts.increment(a);
+            if (items.length == 1) continue;
+            Row row = rows.get(a);
+            if (row == null) {
+                row = new Row();
+                rows.put(a, row);
+            }
+            for (long b : items) if (b != a) row.increment(b);
+        }
+    }
+
+    /** @return 与 productId 共同购买过的商品，没有时返回 null */
+    Row row(long productId) {
+        return rows.get(productId);
+    }
+
+    Row orderCounts() {
+        return orderCounts;
+    }
+
+    /** @return 有共同购买记录的商品ID */
+    long[] items() {
+        long[] ids = new long[rows.size()];
+        int n = 0;
+        for (LongObjectHashMap.PrimitiveEntry<Row> e : rows.entries()) ids[n++] = e.key();
+        return ids;
+    }
+}
@@ -0,0 +1,320 @@
+package com.shopping.server.recommend;
+
+import io.netty.util.collection.LongObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于共同购买的商品推荐（item-item 协同过滤）。
+ * 请求线程只做两件事：下单时把订单商品放入队列、查询时读取已发布的模型，均不加锁。
+ * 后台线程把队列中的订单累加进 {@link CoPurchaseMatrix}，有新订单时用 fork/join 并行重算
+ * 每个商品的 Top-K 相似商品（余弦归一化的共同购买次数），整体替换模型。
+ */
+public class RecommendationEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(RecommendationEngine.class);
+
+    // 每个用户保留的最近购买商品数
+    private static final int HISTORY_SIZE = 32;
+    // fork/join 拆分阈值（每个任务处理的商品数）
+    private static final int SPLIT_THRESHOLD = 64;
+
+    /** 已发布的只读模型 */
+    private static final class Model {
+        static final Model EMPTY = new Model(new LongObjectHashMap<>(), new long[0], 0);
+
+        // 商品 -> 相似商品（按得分降序）及得分
+        final LongObjectHashMap<Neighbors> neighbors;
+        // 按订单数降序的热门商品，用于无历史用户和补位
+        final long[] popular;
+        final long version;
+
+        Model(LongObjectHashMap<Neighbors> neighbors, long[] popular, long version) {
+            this.neighbors = neighbors;
+            this.popular = popular;
+            this.version = version;
+        }
+    }
+
+    private static final class Neighbors {
+        final long[] ids;
+        final float[] scores;
+
+        Neighbors(long[] ids, float[] scores) {
+            this.ids = ids;
+            this.scores = scores;
+        }
+    }
+
+    private final Queue<long[]> pending = new ConcurrentLinkedQueue<>();
+    // 用户 -> 最近购买的商品（新到旧，去重），整体替换
+    private final Map<String, long[]> history = new ConcurrentHashMap<>();
+    private final CoPurchaseMatrix matrix = new CoPurchaseMatrix();
+    private final AtomicLong versions = new AtomicLong();
+    private volatile Model model = Model.EMPTY;
+
+    private volatile long rebuildIntervalMs = 10_000;
+    private volatile int neighborCount = 20;
+    private Thread worker;
+    private volatile boolean running;
+
+    /**
+     * 调整重算策略，可在运行中调用
+     * @param rebuildIntervalMs 两次重算的最小间隔（毫秒）
+     * @param neighborCount 每个商品保留的相似商品数
+     */
+    public void configure(long rebuildIntervalMs, int neighborCount) {
+        this.rebuildIntervalMs = Math.max(0, rebuildIntervalMs);
+        this.neighborCount = Math.max(1, neighborCount);
+    }
+
+    /**
+     * 启动后台线程；启动前已记录的订单（启动时恢复的历史订单）在第一次重算时计入
+     */
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        worker = new Thread(this::rebuildLoop, "recommend-rebuild");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) worker.interrupt();
+    }
+
+    /**
+     * 记录一个订单（只入队，不阻塞）
+     * @param username 下单用户，可为 null
+     * @param productIds 订单中的商品ID（可重复，非正数会被忽略）
+     */
+    public void record(String username, long[] productIds) {
+        long[] items = distinct(productIds);
+        if (items.length == 0) return;
+        pending.add(items);
+        if (username == null) return;
+        history.compute(username, (k, old) -> {
+            long[] merged = new long[Math.min(HISTORY_SIZE, items.length + (old == null ? 0 : old.length))];
+            int n = 0;
+            for (int i = 0; i < items.length && n < merged.length; i++) merged[n++] = items[i];
+            if (old != null) {
+                for (int i = 0; i < old.length && n < merged.length; i++) {
+                    if (indexOf(items, items.length, old[i]) < 0) merged[n++] = old[i];
+                }
+            }
+            return n == merged.length ? merged : Arrays.copyOf(merged, n);
+        });
+    }
+
+    /** @return 用户是否有购买历史（没有时推荐结果与用户无关） */
+    public boolean hasHistory(String username) {
+        return username != null && history.containsKey(username);
+    }
+
+    /**
+     * 用户改名时迁移购买历史
+     */
+    public void rename(String oldUsername, String newUsername) {
+        long[] h = history.remove(oldUsername);
+        if (h != null) history.put(newUsername, h);
+    }
+
+    /**
+     * 为用户推荐商品：累加其最近购买商品的相似商品得分（越近权重越高），排除已购买的商品，不足时用热门商品补位
+     * @param username 用户名，null 或无购买历史时只返回热门商品
+     * @param limit 最多返回的数量
+     * @return 商品ID，按推荐度降序
+     */
+    public long[] recommend(String username, int limit) {
+        Model m = model;
+        long[] bought = username == null ? null : history.get(username);
+        long[] out = new long[limit];
+        int n = 0;
+        if (bought != null) {
+            int cap = 0;
+            for (long item : bought) {
+                Neighbors nb = m.neighbors.get(item);
+                if (nb != null) cap += nb.ids.length;
+            }
+            long[] ids = new long[cap];
+            float[] scores = new float[cap];
+            int size = 0;
+            for (int i = 0; i < bought.length; i++) {
+                Neighbors nb = m.neighbors.get(bought[i]);
+                if (nb == null) continue;
+                float weight = 1f / (1f + 0.1f * i);
+                for (int j = 0; j < nb.ids.length; j++) {
+                    long id = nb.ids[j];
+                    if (indexOf(bought, bought.length, id) >= 0) continue;
+                    int at = indexOf(ids, size, id);
+                    if (at < 0) {
+                        ids[size] = id;
+                        scores[size++] = nb.scores[j] * weight;
+                    } else {
+                        scores[at] += nb.scores[j] * weight;
+                    }
+                }
+            }
+            // 候选很少（最多 历史数 * K），选择排序取前 limit 个即可
+            for (; n < limit && n < size; n++) {
+                int best = n;
+                for (int j = n + 1; j < size; j++) if (scores[j] > scores[best]) best = j;
+                long id = ids[best]; ids[best] = ids[n]; ids[n] = id;
+                float s = scores[best]; scores[best] = scores[n]; scores[n] = s;
+                out[n] = id;
+            }
+        }
+        for (int i = 0; i < m.popular.length && n < limit; i++) {
+            long id = m.popular[i];
+            if (indexOf(out, n, id) >= 0 || (bought != null && indexOf(bought, bought.length, id) >= 0)) continue;
+            out[n++] = id;
+        }
+        return n == limit ? out : Arrays.copyOf(out, n);
+    }
+
+    /** @return 模型版本号，每次重算发布新模型后递增 */
+    public long version() {
+        return model.version;
+    }
+
+    private void rebuildLoop() {
+        // 启动后立即计入已恢复的历史订单
+        long lastRebuild = 0;
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                if (now - lastRebuild >= rebuildIntervalMs && drain()) {
+                    rebuild();
+                    lastRebuild = now;
+                }
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                LOG.warn("Recommendation rebuild failed", e);
+            }
+        }
+    }
+
+    private boolean drain() {
+        boolean changed = false;
+        long[] items;
+        while ((items = pending.poll()) != null) {
+            matrix.addOrder(items);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private void rebuild() {
+        long[] items = matrix.items();
+        Neighbors[] result = new Neighbors[items.length];
+        ForkJoinPool.commonPool().invoke(new TopKTask(items, result, 0, items.length, neighborCount));
+        LongObjectHashMap<Neighbors> neighbors = new LongObjectHashMap<>(Math.max(8, items.length * 2));
+        for (int i = 0; i < items.length; i++) if (result[i] != null) neighbors.put(items[i], result[i]);
+        model = new Model(neighbors, popular(matrix.orderCounts()), versions.incrementAndGet());
+    }
+
+    /** 按商品区间拆分的 Top-K 计算，只读访问矩阵 */
+    private final class TopKTask extends RecursiveAction {
+        private final long[] items;
+        private final Neighbors[] result;
+        private final int from;
+        private final int to;
+        private final int k;
+
+        TopKTask(long[] items, Neighbors[] result, int from, int to, int k) {
+            this.items = items;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TopKTask(items, result, from, mid, k), new TopKTask(items, result, mid, to, k));
+                return;
+            }
+            CoPurchaseMatrix.Row totals = matrix.orderCounts();
+            for (int i = from; i < to; i++) result[i] = topK(items[i], totals);
+        }
+
+        private Neighbors topK(long item, CoPurchaseMatrix.Row totals) {
+            CoPurchaseMatrix.Row row = matrix.row(item);
+            if (row == null || row.size() == 0) return null;
+            long[] keys = row.keys();
+            int[] counts = row.counts();
+            float self = totals.get(item);
+            // 保持升序的小数组做 Top-K，第 0 个是当前最低分
+            int cap = Math.min(k, row.size());
+            long[] ids = new long[cap];
+            float[] scores = new float[cap];
+            int size = 0;
+            for (int j = 0; j < keys.length; j++) {
+                if (keys[j] == 0) continue;
+                float score = (float) (counts[j] / Math.sqrt(self * totals.get(keys[j])));
+                if (size == cap && score <= scores[0]) continue;
+                int pos;
+                if (size < cap) {
+                    pos = size++;
+                    while (pos > 0 && scores[pos - 1] > score) {
+                        ids[pos] = ids[pos - 1];
+                        scores[pos] = scores[pos - 1];
+                        pos--;
+                    }
+                } else {
+                    pos = 0;
+                    while (pos + 1 < cap && scores[pos + 1] < score) {
+                        ids[pos] = ids[pos + 1];
+                        scores[pos] = scores[pos + 1];
+                        pos++;
+                    }
+                }
+                ids[pos] = keys[j];
+                scores[pos] = score;
+            }
+            // 转为降序
+            for (int a = 0, b = size - 1; a < b; a++, b--) {
+                long id = ids[a]; ids[a] = ids[b]; ids[b] = id;
+                float s = scores[a]; scores[a] = scores[b]; scores[b] = s;
+            }
+            return new Neighbors(ids, scores);
+        }
+    }
+
+    private static long[] popular(CoPurchaseMatrix.Row totals) {
+        long[] keys = totals.keys();
+        int[] counts = totals.counts();
+        Integer[] order = new Integer[totals.size()];
+        int n = 0;
+        for (int j = 0; j < keys.length; j++) if (keys[j] != 0) order[n++] = j;
+        Arrays.sort(order, (a, b) -> counts[b] != counts[a] ? Integer.compare(counts[b], counts[a]) : Long.compare(keys[a], keys[b]));
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) ids[i] = keys[order[i]];
+        return ids;
+    }
+
+    private static long[] distinct(long[] productIds) {
+        long[] out = new long[productIds.length];
+        int n = 0;
+        for (long id : productIds) if (id > 0 && indexOf(out, n, id) < 0) out[n++] = id;
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    private static int indexOf(long[] arr, int size, long value) {
+        for (int i = 0; i < size; i++) if (arr[i] == value) return i;
+        return -1;
+    }
+}
@@ -4,6 +4,9 @@ import com.shopping.server.model.CartItem;
 import com.shopping.server.model.Client;
 import com.shopping.server.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -11,6 +14,22 @@ import java.util.Optional;
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     List<CartItem> findByClient(Client client);
     Optional<CartItem> findByClientAndProduct(Client client, Product product);
-    void deleteByClientAndProduct_ClientIdAndProduct_ProductId(Long clientId, Long productId);
+    void deleteByClient_ClientIdAndProduct_ProductId(Long clientId, Long productId);
     void deleteByClient(Client client);
+
+    /**
+     * 清空客户购物车：单条 DELETE，不像 deleteByClient 那样先逐条加载再逐条删除
+     * @param client 客户
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM CartItem c WHERE c.client = :client")
+    int deleteAllByClient(@Param("client") Client client);
+
+    /**
+     * 全部购物车条目（连同客户、商品一次取回）
+     * @return 购物车条目
+     */
+    @Query("SELECT c FROM CartItem c JOIN FETCH c.client JOIN FETCH c.product")
+    List<CartItem> findAllWithClientAndProduct();
 }
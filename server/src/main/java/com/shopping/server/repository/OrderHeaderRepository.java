@@ -1,11 +1,75 @@
 package com.shopping.server.repository;
 
+import com.shopping.server.dto.OrderSummary;
 import com.shopping.server.model.OrderHeader;
 import com.shopping.server.model.Client;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderHeaderRepository extends JpaRepository<OrderHeader, Long> {
-    List<OrderHeader> findByClient(Client client);
+    /**
+     * 客户全部订单连同订单行与商品（一条查询）
+     * @param client 客户
+     * @return 订单
+     */
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    @Query("SELECT DISTINCT h FROM OrderHeader h WHERE h.client = :client")
+    @QueryHints(@QueryHint(name = "hibernate.query.passDistinctThrough", value = "false"))
+    List<OrderHeader> findByClient(@Param("client") Client client);
+
+    /**
+     * 全部订单连同客户与订单行，一条 join fetch 查询取回（启动时恢复内存订单用）
+     * @return 订单，按订单ID升序
+     */
+    @Query("SELECT DISTINCT h FROM OrderHeader h JOIN FETCH h.client LEFT JOIN FETCH h.items i LEFT JOIN FETCH i.product ORDER BY h.id")
+    List<OrderHeader> findAllWithItems();
+
+    /**
+     * 客户订单历史的一页订单ID（键集分页：(created_at, id) 严格小于游标，新到旧），走 idx_order_headers_client_created
+     * @param clientId 客户ID
+     * @param createdAt 游标：上一页最后一条的下单时间（第一页传一个足够大的时间）
+     * @param id 游标：上一页最后一条的订单ID（第一页传 Long.MAX_VALUE）
+     * @param pageable 条数，如 PageRequest.of(0, n)
+     * @return 订单ID
+     */
+    @Query("SELECT h.id FROM OrderHeader h WHERE h.client.clientId = :clientId " +
+           "AND (h.createdAt < :createdAt OR (h.createdAt = :createdAt AND h.id < :id)) " +
+           "ORDER BY h.createdAt DESC, h.id DESC")
+    List<Long> findPageIds(@Param("clientId") Long clientId, @Param("createdAt") LocalDateTime createdAt,
+                           @Param("id") Long id, Pageable pageable);
+
+    /**
+     * 按ID取订单连同订单行与商品（一条查询，配合 findPageIds 分页，避免集合 fetch 与 LIMIT 同用时的内存分页）
+     * @param ids 订单ID
+     * @return 订单，新到旧
+     */
+    @EntityGraph(attributePaths = {"items", "items.product"})
+    @Query("SELECT DISTINCT h FROM OrderHeader h WHERE h.id IN :ids ORDER BY h.createdAt DESC, h.id DESC")
+    @QueryHints(@QueryHint(name = "hibernate.query.passDistinctThrough", value = "false"))
+    List<OrderHeader> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 客户订单列表（投影，只取列表列与行数；键集分页同 findPageIds）
+     * @param clientId 客户ID
+     * @param createdAt 游标：上一页最后一条的下单时间
+     * @param id 游标：上一页最后一条的订单ID
+     * @param pageable 条数
+     * @return 订单摘要，新到旧
+     */
+    @Query("SELECT new com.shopping.server.dto.OrderSummary(h.id, h.createdAt, h.status, h.totalPrice, COUNT(i)) " +
+           "FROM OrderHeader h LEFT JOIN h.items i WHERE h.client.clientId = :clientId " +
+           "AND (h.createdAt < :createdAt OR (h.createdAt = :createdAt AND h.id < :id)) " +
+           "GROUP BY h.id, h.createdAt, h.status, h.totalPrice " +
+           "ORDER BY h.createdAt DESC, h.id DESC")
+    List<OrderSummary> findSummaries(@Param("clientId") Long clientId, @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id, Pageable pageable);
 }
@@ -1,7 +1,11 @@
 package com.shopping.server.repository;
 
 import com.shopping.server.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -14,6 +18,7 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      * @param clientId 客户ID
      * @return 订单列表
      */
+    @EntityGraph(attributePaths = {"client", "product"})
     List<Order> findByClientClientId(Long clientId);
     
     /**
@@ -22,13 +27,33 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      * @param status 订单状态
      * @return 订单列表
      */
+    @EntityGraph(attributePaths = {"client", "product"})
     List<Order> findByClientClientIdAndStatus(Long clientId, String status);
     
+    /**
+     * 客户购物车中的条目，连同商品一次取回（结算用，避免逐条加载商品）
+     * @param clientId 客户ID
+     * @return 购物车条目
+     */
+    @Query("SELECT o FROM Order o JOIN FETCH o.client JOIN FETCH o.product WHERE o.client.clientId = :clientId AND o.status = 'CART'")
+    List<Order> findCartWithProduct(@Param("clientId") Long clientId);
+
+    /**
+     * 将客户购物车中的全部条目标记为已支付（单条 UPDATE）
+     * @param clientId 客户ID
+     * @param orderTime 下单时间
+     * @return 更新的行数
+     */
+    @Modifying
+    @Query("UPDATE Order o SET o.status = 'PAID', o.orderTime = :orderTime WHERE o.client.clientId = :clientId AND o.status = 'CART'")
+    int markCartPaid(@Param("clientId") Long clientId, @Param("orderTime") LocalDateTime orderTime);
+
     /**
      * 根据订单状态查找订单
      * @param status 订单状态
      * @return 订单列表
      */
+    @EntityGraph(attributePaths = {"client", "product"})
     List<Order> findByStatus(String status);
     
     /**
@@ -37,6 +62,7 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      * @param endTime 结束时间
      * @return 订单列表
      */
+    @EntityGraph(attributePaths = {"client", "product"})
     List<Order> findByOrderTimeBetween(LocalDateTime startTime, LocalDateTime endTime);
     
     /**
@@ -46,6 +72,7 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      * @param endTime 结束时间
      * @return 订单列表
      */
+    @EntityGraph(attributePaths = {"client", "product"})
     List<Order> findByClientClientIdAndOrderTimeBetween(Long clientId, LocalDateTime startTime, LocalDateTime endTime);
     
     /**
@@ -1,7 +1,10 @@
 package com.shopping.server.repository;
 
 import com.shopping.server.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -54,15 +57,14 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByStockGreaterThan(Integer stock);
     
     /**
-     * 自定义查询：查找打折力度最大的N个商品
-     * @param limit 限制数量
+     * 自定义查询：查找打折力度最大的N个商品（JPQL 不支持 LIMIT，条数由分页参数决定，如 PageRequest.of(0, n)）
+     * @param pageable 分页参数
      * @return 商品列表
      */
-    @Query(value = "SELECT p FROM Product p " +
-           "WHERE p.onSale = true " +
-           "ORDER BY (p.price - p.discountPrice) / p.price DESC " +
-           "LIMIT :limit")
-    List<Product> findTopDiscountProducts(@Param("limit") int limit);
+    @Query("SELECT p FROM Product p " +
+           "WHERE p.onSale = true AND p.discountPrice IS NOT NULL AND p.discountPrice < p.price " +
+           "ORDER BY (p.price - p.discountPrice) / p.price DESC, p.productId ASC")
+    List<Product> findTopDiscountProducts(Pageable pageable);
     
     /**
      * 自定义查询：搜索商品（支持名称和描述）
@@ -73,7 +75,63 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
            "LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Product> searchProducts(@Param("keyword") String keyword);
+
+    /**
+     * 全文检索商品名称与描述（依赖 ft_products_name_desc ngram 全文索引），按相关度排序
+     * @param keyword 搜索关键词
+     * @param pageable 分页参数
+     * @return 商品分页结果
+     */
+    @Query(value = "SELECT * FROM products " +
+           "WHERE MATCH(name, description) AGAINST (:keyword IN BOOLEAN MODE) " +
+           "ORDER BY MATCH(name, description) AGAINST (:keyword IN BOOLEAN MODE) DESC",
+           countQuery = "SELECT COUNT(*) FROM products " +
+           "WHERE MATCH(name, description) AGAINST (:keyword IN BOOLEAN MODE)",
+           nativeQuery = true)
+    Page<Product> searchProductsFullText(@Param("keyword") String keyword, Pageable pageable);
     
+    /**
+     * 条件扣减库存：仅当库存充足时扣减，单条 UPDATE 在行锁内完成判断与扣减
+     * @param productId 商品ID
+     * @param quantity 扣减数量
+     * @return 受影响行数，1 表示扣减成功，0 表示商品不存在或库存不足
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stock = p.stock - :quantity " +
+           "WHERE p.productId = :productId AND p.stock >= :quantity")
+    int decrementStock(@Param("productId") Long productId, @Param("quantity") int quantity);
+    
+    /**
+     * 键集分页：商品ID大于游标的下一页（主键索引定位，页深不影响耗时）
+     * @param afterId 游标：上一页最后一个商品ID，第一页传 0
+     * @param pageable 条数，如 PageRequest.of(0, n)
+     * @return 商品列表，按ID升序
+     */
+    @Query("SELECT p FROM Product p WHERE p.productId > :afterId ORDER BY p.productId")
+    List<Product> findPageAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 键集分页：按 (价格, 商品ID) 升序，取大于游标的下一页（走 idx_products_price）
+     * @param price 游标：上一页最后一个商品的价格
+     * @param afterId 游标：上一页最后一个商品ID
+     * @param pageable 条数
+     * @return 商品列表
+     */
+    @Query("SELECT p FROM Product p WHERE p.price > :price OR (p.price = :price AND p.productId > :afterId) " +
+           "ORDER BY p.price, p.productId")
+    List<Product> findPageAfterPrice(@Param("price") BigDecimal price, @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 键集分页：按 (库存, 商品ID) 升序，取大于游标的下一页（走 idx_products_stock）
+     * @param stock 游标：上一页最后一个商品的库存
+     * @param afterId 游标：上一页最后一个商品ID
+     * @param pageable 条数
+     * @return 商品列表
+     */
+    @Query("SELECT p FROM Product p WHERE p.stock > :stock OR (p.stock = :stock AND p.productId > :afterId) " +
+           "ORDER BY p.stock, p.productId")
+    List<Product> findPageAfterStock(@Param("stock") Integer stock, @Param("afterId") Long afterId, Pageable pageable);
+
     /**
      * 统计促销商品数量
      * @return 促销商品数量
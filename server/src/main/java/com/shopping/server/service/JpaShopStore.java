@@ -0,0 +1,240 @@
+package com.shopping.server.service;
+
+import com.shopping.server.catalog.CatalogProduct;
+import com.shopping.server.model.CartItem;
+import com.shopping.server.model.Client;
+import com.shopping.server.model.OrderHeader;
+import com.shopping.server.model.OrderItem;
+import com.shopping.server.model.Product;
+import com.shopping.server.persist.ShopStore;
+import com.shopping.server.repository.CartItemRepository;
+import com.shopping.server.repository.ClientRepository;
+import com.shopping.server.repository.OrderHeaderRepository;
+import com.shopping.server.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 JPA 的 socket 数据持久化。
+ * 写路径按批量设计（hibernate.jdbc.batch_size、order_inserts，见 application-jpa.yml）：
+ * 购物车整车保存为 1 条 DELETE + 1 批 INSERT，下单为 1 批订单行 INSERT + 1 批条件库存 UPDATE，与行数无关。
+ * 商品走二级缓存，订单行按ID取商品不访问数据库。
+ */
+@Service
+@Profile("jpa")
+@Transactional
+public class JpaShopStore implements ShopStore {
+    // 未登录用户的购物车/订单挂在这个伪客户下（与内存购物车的键一致）
+    private static final String ANONYMOUS = "__anon__";
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private OrderHeaderRepository orderHeaderRepository;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CatalogProduct> loadCatalog(List<CatalogProduct> seed) {
+        if (productRepository.count() == 0 && !seed.isEmpty()) {
+            // 商品主键为自增列，持久化实体无法指定ID；直接批量 INSERT 保留预置商品ID
+            jdbcTemplate.batchUpdate("INSERT INTO products (product_id, name, price, description, image_url, stock, on_sale, discount_price) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)", seed, seed.size(), (ps, p) -> {
+                ps.setLong(1, p.getProductId());
+                ps.setString(2, p.getName());
+                ps.setBigDecimal(3, BigDecimal.valueOf(p.getPrice()));
+                ps.setString(4, p.getDescription());
+                ps.setString(5, p.getImageUrl());
+                ps.setInt(6, p.getStock());
+                ps.setBoolean(7, p.isOnSale());
+                ps.setBigDecimal(8, p.getDiscountPrice() > 0 ? BigDecimal.valueOf(p.getDiscountPrice()) : null);
+            });
+        }
+        List<CatalogProduct> out = new ArrayList<>();
+        for (Product p : productRepository.findAll()) {
+            out.add(new CatalogProduct(p.getProductId(), p.getName(), p.getPrice().doubleValue(), p.getDescription(),
+                    p.getImageUrl(), p.getStock() == null ? 0 : p.getStock(), Boolean.TRUE.equals(p.getOnSale()),
+                    p.getDiscountPrice() == null ? 0 : p.getDiscountPrice().doubleValue()));
+        }
+        return out;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, String> loadUsers() {
+        Map<String, String> out = new HashMap<>();
+        for (Client c : clientRepository.findAll()) {
+            if (!ANONYMOUS.equals(c.getUsername())) out.put(c.getUsername(), c.getPassword());
+        }
+        return out;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Map<String, Object>> loadProfiles() {
+        Map<String, Map<String, Object>> out = new HashMap<>();
+        for (Client c : clientRepository.findAll()) {
+            if (ANONYMOUS.equals(c.getUsername())) continue;
+            Map<String, Object> prof = new ConcurrentHashMap<>();
+            if (c.getPhone() != null) prof.put("phone", c.getPhone());
+            out.put(c.getUsername(), prof);
+        }
+        return out;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, List<Map<String, Object>>> loadCarts() {
+        Map<String, List<Map<String, Object>>> out = new HashMap<>();
+        for (CartItem item : cartItemRepository.findAllWithClientAndProduct()) {
+            Product p = item.getProduct();
+            Map<String, Object> m = new HashMap<>();
+            m.put("product_id", p.getProductId());
+            m.put("name", p.getName());
+            m.put("price", p.getPrice().doubleValue());
+            m.put("quantity", item.getQuantity());
+            m.put("description", p.getDescription());
+            m.put("image_url", p.getImageUrl());
+            m.put("stock", p.getStock() == null ? 0 : p.getStock());
+            m.put("on_sale", Boolean.TRUE.equals(p.getOnSale()));
+            if (Boolean.TRUE.equals(p.getOnSale()) && p.getDiscountPrice() != null) m.put("discount_price", p.getDiscountPrice().doubleValue());
+            out.computeIfAbsent(item.getClient().getUsername(), k -> new ArrayList<>()).add(m);
+        }
+        return out;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> loadOrders() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (OrderHeader h : orderHeaderRepository.findAllWithItems()) {
+            List<Map<String, Object>> items = new ArrayList<>(h.getItems().size());
+            for (OrderItem it : h.getItems()) {
+                Map<String, Object> m = new HashMap<>();
+                m.put("productId", it.getProduct().getProductId());
+                m.put("quantity", it.getQuantity());
+                m.put("price", it.getPrice().doubleValue());
+                items.add(m);
+            }
+            String username = h.getClient().getUsername();
+            Map<String, Object> order = new HashMap<>();
+            order.put("orderId", h.getId());
+            order.put("username", ANONYMOUS.equals(username) ? null : username);
+            order.put("items", items);
+            order.put("total_price", h.getTotalPrice().doubleValue());
+            order.put("status", h.getStatus());
+            order.put("order_time", h.getCreatedAt().toInstant(ZoneOffset.UTC).toString());
+            out.add(order);
+        }
+        return out;
+    }
+
+    @Override
+    public void saveUser(String username, String password, Map<String, Object> profile) {
+        Client c = clientRepository.findByUsername(username).orElseGet(Client::new);
+        c.setUsername(username);
+        c.setPassword(password);
+        Object phone = profile == null ? null : profile.get("phone");
+        c.setPhone(phone == null ? null : String.valueOf(phone));
+        if (c.getClientId() == null) clientRepository.save(c);
+    }
+
+    @Override
+    public void renameUser(String oldUsername, String newUsername) {
+        clientRepository.findByUsername(oldUsername).ifPresent(c -> c.setUsername(newUsername));
+    }
+
+    @Override
+    public void saveCart(String cartKey, List<Map<String, Object>> items) {
+        Client client = ANONYMOUS.equals(cartKey) ? anonymousClient() : clientRepository.findByUsername(cartKey).orElse(null);
+        // 已改名或删除的用户：购物车随 client_id 迁移，旧键无需处理
+        if (client == null) return;
+        cartItemRepository.deleteAllByClient(client);
+        if (items == null) return;
+        for (Map<String, Object> it : items) {
+            CartItem item = new CartItem();
+            item.setClient(client);
+            item.setProduct(entityManager.getReference(Product.class, ((Number) it.get("product_id")).longValue()));
+            item.setQuantity(((Number) it.getOrDefault("quantity", 1)).intValue());
+            entityManager.persist(item);
+        }
+    }
+
+    @Override
+    public void insertOrder(Map<String, Object> order) {
+        String username = (String) order.get("username");
+        Client client = username == null ? anonymousClient() : clientRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalStateException("用户不存在: " + username));
+        OrderHeader header = new OrderHeader();
+        header.setId(((Number) order.get("orderId")).longValue());
+        header.setClient(client);
+        header.setTotalPrice(BigDecimal.valueOf(((Number) order.get("total_price")).doubleValue()));
+        header.setCreatedAt(LocalDateTime.ofInstant(Instant.parse((String) order.get("order_time")), ZoneOffset.UTC));
+        header.setStatus((String) order.get("status"));
+        // 同一商品多行时合并扣减
+        Map<Long, Integer> deduct = new LinkedHashMap<>();
+        for (Object o : (List<?>) order.get("items")) {
+            Map<?, ?> it = (Map<?, ?>) o;
+            long productId = ((Number) it.get("productId")).longValue();
+            int quantity = ((Number) it.get("quantity")).intValue();
+            if (quantity < 1) throw new IllegalStateException("订单行数量非法: 订单 " + header.getId());
+            Object price = it.get("price");
+            if (!(price instanceof Number)) throw new IllegalStateException("订单行缺少单价: 订单 " + header.getId());
+            OrderItem item = new OrderItem();
+            item.setOrder(header);
+            // 只需外键：代理对象不查库；单价取订单行上的快照
+            item.setProduct(entityManager.getReference(Product.class, productId));
+            item.setQuantity(quantity);
+            item.setPrice(BigDecimal.valueOf(((Number) price).doubleValue()));
+            header.getItems().add(item);
+            // 合并超出 int 范围时抛 ArithmeticException，整单回滚
+            deduct.merge(productId, quantity, Math::addExact);
+        }
+        // 订单头与订单行在 flush 时按表排序后批量 INSERT
+        entityManager.persist(header);
+        entityManager.flush();
+        // 库存已由内存库存引擎原子预占；库中仍按条件扣减（一批 UPDATE），与库存不一致时整单回滚
+        if (!productService.decrementStock(deduct)) {
+            throw new IllegalStateException("库存不足: 订单 " + header.getId());
+        }
+    }
+
+    private Client anonymousClient() {
+        return clientRepository.findByUsername(ANONYMOUS).orElseGet(() -> {
+            Client c = new Client();
+            c.setUsername(ANONYMOUS);
+            c.setPassword("");
+            return clientRepository.save(c);
+        });
+    }
+}
@@ -1,21 +1,41 @@
 package com.shopping.server.service;
 
+import com.shopping.server.dto.OrderSummary;
 import com.shopping.server.model.Order;
+import com.shopping.server.model.OrderHeader;
+import com.shopping.server.model.OrderItem;
+import com.shopping.server.repository.OrderHeaderRepository;
 import com.shopping.server.repository.OrderRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
+@Profile("jpa")
 public class OrderService {
     @Autowired
     private OrderRepository orderRepository;
     
+    @Autowired
+    private OrderHeaderRepository orderHeaderRepository;
+    
     @Autowired
     private ProductService productService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     public List<Order> getClientOrders(Long clientId) {
         return orderRepository.findByClientClientId(clientId);
@@ -25,33 +45,95 @@ public class OrderService {
         return orderRepository.findByClientClientIdAndStatus(clientId, "CART");
     }
     
+    /**
+     * 订单历史（含订单行与商品），按下单时间新到旧键集分页：固定 2 条查询，与订单数、行数无关
+     * @param clientId 客户ID
+     * @param beforeCreatedAt 游标：上一页最后一条的下单时间，第一页传 null
+     * @param beforeId 游标：上一页最后一条的订单ID，第一页传 null
+     * @param limit 每页条数
+     * @return 订单，新到旧
+     */
+    @Transactional(readOnly = true)
+    public List<OrderHeader> getOrderHistory(Long clientId, LocalDateTime beforeCreatedAt, Long beforeId, int limit) {
+        List<Long> ids = orderHeaderRepository.findPageIds(clientId, cursorTime(beforeCreatedAt), cursorId(beforeId), PageRequest.of(0, limit));
+        if (ids.isEmpty()) return Collections.emptyList();
+        return orderHeaderRepository.findWithItemsByIdIn(ids);
+    }
+    
+    /**
+     * 订单列表（摘要投影，不加载实体），分页方式同 {@link #getOrderHistory}
+     */
+    @Transactional(readOnly = true)
+    public List<OrderSummary> getOrderSummaries(Long clientId, LocalDateTime beforeCreatedAt, Long beforeId, int limit) {
+        return orderHeaderRepository.findSummaries(clientId, cursorTime(beforeCreatedAt), cursorId(beforeId), PageRequest.of(0, limit));
+    }
+    
+    // 第一页：游标取最大值，与后续页共用同一条查询
+    private static LocalDateTime cursorTime(LocalDateTime beforeCreatedAt) {
+        return beforeCreatedAt == null ? LocalDateTime.of(9999, 12, 31, 23, 59, 59) : beforeCreatedAt;
+    }
+    
+    private static Long cursorId(Long beforeId) {
+        return beforeId == null ? Long.MAX_VALUE : beforeId;
+    }
+    
     @Transactional
     public Order addToCart(Order order) {
         order.setStatus("CART");
         return orderRepository.save(order);
     }
     
+    /**
+     * 结算购物车：全部行的库存在一批条件 UPDATE 中扣减，订单头与订单行批量插入，购物车条目一条 UPDATE 标记为已支付。
+     * 任一行库存不足时整个事务回滚，不留下部分扣减或部分支付的条目。
+     * @param clientId 客户ID
+     * @param orderId 订单号（由调用方分配，socket 服务中与 OrderLog 分配的 orderId 一致）
+     * @return 是否结算成功；购物车为空或库存不足时返回 false
+     */
     @Transactional
-    public boolean checkout(Long clientId) {
-        List<Order> cartItems = getClientCart(clientId);
-        boolean success = true;
-        
+    public boolean checkout(Long clientId, long orderId) {
+        List<Order> cartItems = orderRepository.findCartWithProduct(clientId);
+        if (cartItems.isEmpty()) return false;
+
+        LocalDateTime now = LocalDateTime.now();
+        OrderHeader header = new OrderHeader();
+        header.setId(orderId);
+        header.setClient(cartItems.get(0).getClient());
+        header.setCreatedAt(now);
+        header.setStatus("PAID");
+        BigDecimal total = BigDecimal.ZERO;
+        // 同一商品多行时合并扣减
+        Map<Long, Integer> quantities = new HashMap<>();
         for (Order order : cartItems) {
-            if (productService.updateStock(order.getProduct().getProductId(), order.getQuantity())) {
-                order.setStatus("PAID");
-                order.setOrderTime(LocalDateTime.now());
-                orderRepository.save(order);
-            } else {
-                success = false;
-                break;
+            OrderItem item = new OrderItem();
+            item.setOrder(header);
+            item.setProduct(order.getProduct());
+            item.setQuantity(order.getQuantity());
+            item.setPrice(order.getProduct().getPrice());
+            header.getItems().add(item);
+            total = total.add(item.getSubtotal());
+            try {
+                quantities.merge(order.getProduct().getProductId(), order.getQuantity(), Math::addExact);
+            } catch (ArithmeticException overflow) {
+                // 合并后的数量超出 int 范围：拒绝结算（此时尚未写库）
+                return false;
             }
         }
-        
-        return success;
+        header.setTotalPrice(total);
+
+        if (!productService.decrementStock(quantities)) {
+            // 已执行的扣减随事务撤销
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return false;
+        }
+        // 订单头与订单行在提交时按表排序后批量 INSERT
+        entityManager.persist(header);
+        orderRepository.markCartPaid(clientId, now);
+        return true;
     }
     
     @Transactional
     public void removeFromCart(Long orderId) {
         orderRepository.deleteById(orderId);
     }
-}
\ No newline at end of file
+}
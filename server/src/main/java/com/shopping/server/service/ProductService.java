@@ -3,16 +3,32 @@ package com.shopping.server.service;
 import com.shopping.server.model.Product;
 import com.shopping.server.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 @Service
+@Profile("jpa")
 public class ProductService {
     @Autowired
     private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
     
     public List<Product> getAllProducts() {
         return productRepository.findAll();
@@ -22,6 +38,40 @@ public class ProductService {
         return productRepository.findByOnSaleTrue();
     }
     
+    /**
+     * 键集分页：按商品ID升序取游标之后的一页
+     * @param afterId 上一页最后一个商品ID，第一页传 null
+     * @param limit 每页条数
+     * @return 商品列表
+     */
+    public List<Product> getProductsAfter(Long afterId, int limit) {
+        return productRepository.findPageAfterId(afterId == null ? 0L : afterId, PageRequest.of(0, limit));
+    }
+    
+    /**
+     * 键集分页：按 (价格, 商品ID) 升序取游标之后的一页
+     * @param price 上一页最后一个商品的价格，第一页传 null
+     * @param afterId 上一页最后一个商品ID，第一页传 null
+     * @param limit 每页条数
+     * @return 商品列表
+     */
+    public List<Product> getProductsByPriceAfter(BigDecimal price, Long afterId, int limit) {
+        if (price == null) return productRepository.findPageAfterPrice(BigDecimal.valueOf(-1), 0L, PageRequest.of(0, limit));
+        return productRepository.findPageAfterPrice(price, afterId == null ? 0L : afterId, PageRequest.of(0, limit));
+    }
+    
+    /**
+     * 键集分页：按 (库存, 商品ID) 升序取游标之后的一页
+     * @param stock 上一页最后一个商品的库存，第一页传 null
+     * @param afterId 上一页最后一个商品ID，第一页传 null
+     * @param limit 每页条数
+     * @return 商品列表
+     */
+    public List<Product> getProductsByStockAfter(Integer stock, Long afterId, int limit) {
+        if (stock == null) return productRepository.findPageAfterStock(Integer.MIN_VALUE, 0L, PageRequest.of(0, limit));
+        return productRepository.findPageAfterStock(stock, afterId == null ? 0L : afterId, PageRequest.of(0, limit));
+    }
+    
     public Optional<Product> getProductById(Long id) {
         return productRepository.findById(id);
     }
@@ -38,15 +88,43 @@ public class ProductService {
     
     @Transactional
     public boolean updateStock(Long productId, int quantity) {
-        Optional<Product> productOpt = productRepository.findById(productId);
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            if (product.getStock() >= quantity) {
-                product.setStock(product.getStock() - quantity);
-                productRepository.save(product);
-                return true;
-            }
-        }
-        return false;
-    }
-}
\ No newline at end of file
+        // 条件 UPDATE 原子完成“检查 + 扣减”，避免读-改-写并发超卖
+        return productRepository.decrementStock(productId, quantity) == 1;
+    }
+
+    /**
+     * 条件扣减多个商品的库存：一条 UPDATE ... SET stock = stock - CASE ... WHERE product_id IN (...) AND stock >= CASE ...，
+     * 只有库存足够的行被更新，按更新行数判断是否全部扣减成功。
+     * 单条语句的更新行数总是准确的（JDBC 批量执行在 rewriteBatchedStatements 等情况下只返回 SUCCESS_NO_INFO，无法逐行判断）；
+     * 行锁按主键顺序获取，并发下单不会互相死锁。
+     * 返回 false 时已扣减的行需由调用方回滚事务撤销（须在事务内调用）。
+     * @param quantities 商品ID -> 扣减数量（须为正数）
+     * @return 是否全部扣减成功
+     */
+    @Transactional
+    public boolean decrementStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) return true;
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        StringBuilder delta = new StringBuilder("CASE product_id");
+        StringBuilder ids = new StringBuilder();
+        List<Object> caseArgs = new ArrayList<>(sorted.size() * 2);
+        List<Object> idArgs = new ArrayList<>(sorted.size());
+        sorted.forEach((id, qty) -> {
+            delta.append(" WHEN ? THEN ?");
+            caseArgs.add(id);
+            caseArgs.add(qty);
+            ids.append(ids.length() == 0 ? "?" : ",?");
+            idArgs.add(id);
+        });
+        delta.append(" END");
+        List<Object> args = new ArrayList<>(caseArgs.size() * 2 + idArgs.size());
+        args.addAll(caseArgs);
+        args.addAll(idArgs);
+        args.addAll(caseArgs);
+        int updated = jdbcTemplate.update("UPDATE products SET stock = stock - " + delta
+                + " WHERE product_id IN (" + ids + ") AND stock >= " + delta, args.toArray());
+        // 绕过 Hibernate 的 UPDATE 不会更新二级缓存，按ID逐出
+        for (Long id : quantities.keySet()) entityManager.getEntityManagerFactory().getCache().evict(Product.class, id);
+        return updated == sorted.size();
+    }
+}
@@ -0,0 +1,71 @@
+package com.shopping.server.session;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 连接会话登记：登录用户名直接挂在 {@link Channel} 属性上，按连接取用户名为 O(1)；
+ * 另维护 用户名 -> 连接集合 的反向索引，用户改名时迁移该用户的全部会话（同一用户可在多个连接上登录）。
+ */
+public class SessionRegistry {
+    public static final AttributeKey<String> USERNAME = AttributeKey.valueOf("session.username");
+
+    private final Map<String, Set<Channel>> channelsByUser = new ConcurrentHashMap<>();
+
+    /**
+     * 将连接绑定到已登录用户；连接此前绑定的其他用户会被解绑
+     * @param channel 连接
+     * @param username 用户名
+     */
+    public void bind(Channel channel, String username) {
+        String previous = channel.attr(USERNAME).getAndSet(username);
+        if (previous != null && !previous.equals(username)) remove(previous, channel);
+        channelsByUser.compute(username, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(channel);
+            return set;
+        });
+    }
+
+    /**
+     * 解绑连接（断开、空闲淘汰时调用）
+     * @param channel 连接
+     */
+    public void unbind(Channel channel) {
+        String username = channel.attr(USERNAME).getAndSet(null);
+        if (username != null) remove(username, channel);
+    }
+
+    /**
+     * @param channel 连接
+     * @return 连接上已登录的用户名，未登录返回 null
+     */
+    public String username(Channel channel) {
+        return channel.attr(USERNAME).get();
+    }
+
+    /**
+     * 用户改名后迁移该用户的全部会话
+     * @param oldUsername 原用户名
+     * @param newUsername 新用户名
+     */
+    public void rename(String oldUsername, String newUsername) {
+        Set<Channel> channels = channelsByUser.remove(oldUsername);
+        if (channels == null) return;
+        for (Channel ch : channels) {
+            if (ch.attr(USERNAME).compareAndSet(oldUsername, newUsername)) bind(ch, newUsername);
+        }
+    }
+
+    private void remove(String username, Channel channel) {
+        // 最后一个连接移除后删除整个条目，避免已下线用户的空集合常驻
+        channelsByUser.computeIfPresent(username, (k, set) -> {
+            set.remove(channel);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package com.shopping.server.socket;
+
+import java.util.Arrays;
+
+/**
+ * 按连接的重复请求过滤：固定容量的环形缓冲，只保存请求内容的 64 位哈希和到达时间，
+ * 不保留请求字符串本身，每个连接占用的内存恒定。
+ * 只在连接所属的 I/O 线程上访问，无需同步。
+ */
+final class DedupRing {
+    private final long[] hashes;
+    private final long[] times;
+    private final long windowMs;
+    private int next;
+
+    DedupRing(int capacity, long windowMs) {
+        this.hashes = new long[capacity];
+        this.times = new long[capacity];
+        this.windowMs = windowMs;
+        // 初始时间设为足够早，空槽永远不会被判定为重复
+        Arrays.fill(times, Long.MIN_VALUE / 2);
+    }
+
+    /**
+     * 判断请求是否为窗口期内的重复请求；不是重复时记录下来
+     * @param h 请求内容的 64 位哈希（JSON 请求见 {@link #hash}，二进制请求为解码前帧字节的哈希）
+     * @param now 当前时间（毫秒）
+     * @return 窗口期内已出现过相同请求返回 true
+     */
+    boolean isDuplicate(long h, long now) {
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] == h && now - times[i] < windowMs) return true;
+        }
+        // 覆盖最旧的一条；窗口期内请求数超过容量时最旧的记录提前失效，只会少去重不会误判
+        hashes[next] = h;
+        times[next] = now;
+        next = (next + 1) % hashes.length;
+        return false;
+    }
+
+    /**
+     * JSON 请求字符串的 FNV-1a 64 位哈希
+     */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
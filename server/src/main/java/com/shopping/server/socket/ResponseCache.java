@@ -0,0 +1,112 @@
+package com.shopping.server.socket;
+
+import com.shopping.server.socket.codec.BinaryMessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 预先序列化的响应缓存：按 (协议, 消息类型 + 参数) 保存编码好的 ByteBuf，命中时只需 retainedDuplicate 后写出。
+ * 每个条目记录生成时的数据版本号，读取时版本不一致即视为过期并重新生成。
+ * 同一消息类型（键中第一个 ':' 之前的部分）的条目共用一个版本来源：某个键以更新的版本写入时，
+ * 该类型下版本更旧的条目一并移除；条目总数超过上限时淘汰最久未访问的条目。被移除条目的缓冲区随即释放。
+ */
+final class ResponseCache {
+    // 条目上限（每种协议），按任意分页参数请求时按 LRU 淘汰
+    private static final int MAX_ENTRIES = 512;
+    // 缓存长期持有，不占用连接的池化内存
+    private static final UnpooledByteBufAllocator ALLOC = new UnpooledByteBufAllocator(true);
+
+    private static final class Entry {
+        final long version;
+        final ByteBuf payload;
+
+        Entry(long version, ByteBuf payload) {
+            this.version = version;
+            this.payload = payload;
+        }
+    }
+
+    /** 一种协议的条目：访问顺序的 LinkedHashMap，所有访问都在自身的锁内 */
+    private static final class Entries extends LinkedHashMap<String, Entry> {
+        // 消息类型 -> 已写入的最新版本号
+        private final Map<String, Long> latest = new HashMap<>();
+
+        Entries() {
+            super(64, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= MAX_ENTRIES) return false;
+            eldest.getValue().payload.release();
+            return true;
+        }
+
+        /**
+         * 写入条目；版本比该类型已知的更新时，先移除该类型下的旧版本条目
+         * @return 版本已落后（生成期间数据已变化且新版本已写入）时不写入，返回 false
+         */
+        boolean store(String key, Entry fresh) {
+            String type = typeOf(key);
+            Long known = latest.get(type);
+            if (known != null && fresh.version < known) return false;
+            if (known == null || fresh.version > known) {
+                latest.put(type, fresh.version);
+                if (known != null) {
+                    for (Iterator<Map.Entry<String, Entry>> it = entrySet().iterator(); it.hasNext(); ) {
+                        Map.Entry<String, Entry> e = it.next();
+                        if (e.getValue().version < fresh.version && typeOf(e.getKey()).equals(type)) {
+                            e.getValue().payload.release();
+                            it.remove();
+                        }
+                    }
+                }
+            }
+            Entry old = put(key, fresh);
+            if (old != null) old.payload.release();
+            return true;
+        }
+
+        private static String typeOf(String key) {
+            int i = key.indexOf(':');
+            return i < 0 ? key : key.substring(0, i);
+        }
+    }
+
+    private final Entries json = new Entries();
+    private final Entries binary = new Entries();
+
+    /**
+     * 取缓存的响应，缺失或过期时调用 builder 生成并缓存
+     * @param binaryProtocol 是否为二进制连接（JSON 行与二进制帧分别缓存）
+     * @param key 消息类型 + 参数
+     * @param version 当前数据版本号（调用 builder 之前读取，生成期间数据变化会让条目下次即过期）
+     * @param builder 生成响应对象
+     * @return 可直接写出的缓冲区（调用方获得一个引用）
+     */
+    ByteBuf get(boolean binaryProtocol, String key, long version, Callable<Object> builder) throws Exception {
+        Entries entries = binaryProtocol ? binary : json;
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && e.version == version) return e.payload.retainedDuplicate();
+        }
+        // 生成与编码在锁外进行
+        Object resp = builder.call();
+        ByteBuf payload = binaryProtocol ? BinaryMessageCodec.encodeFrame(ALLOC, resp) : ResponseWriter.jsonLine(ALLOC, resp);
+        ByteBuf out = payload.retainedDuplicate();
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            // 其他线程已写入同样或更新的版本时，本次生成的缓冲区只用这一次
+            if ((e != null && e.version >= version) || !entries.store(key, new Entry(version, payload))) {
+                payload.release();
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,40 @@
+package com.shopping.server.socket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JSON 响应编码：Jackson 直接写入（池化的）ByteBuf 并追加换行，
+ * 不经过中间的 String 与 StringEncoder 的再次编码。
+ */
+final class ResponseWriter {
+    // ObjectWriter 不可变、线程安全，所有连接共享
+    private static final ObjectWriter JSON = new ObjectMapper().writer();
+
+    private ResponseWriter() {}
+
+    /**
+     * @param alloc 连接的分配器
+     * @param resp 响应（Map 或 DTO）
+     * @return 一行 JSON（以 \n 结尾），由调用方写出后释放
+     */
+    static ByteBuf jsonLine(ByteBufAllocator alloc, Object resp) throws IOException {
+        ByteBuf buf = alloc.ioBuffer();
+        try {
+            // ByteBufOutputStream 同时实现了 DataOutput，需按 OutputStream 传入
+            OutputStream out = new ByteBufOutputStream(buf);
+            JSON.writeValue(out, resp);
+            buf.writeByte('\n');
+            return buf;
+        } catch (IOException | RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+    }
+}
@@ -1,79 +1,284 @@
 package com.shopping.server.socket;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.server.catalog.CatalogProduct;
+import com.shopping.server.catalog.ProductCatalog;
+import com.shopping.server.catalog.ProductSearchIndex;
+import com.shopping.server.catalog.ProductSortIndex;
+import com.shopping.server.catalog.PromotionIndex;
+import com.shopping.server.catalog.StockEngine;
+import com.shopping.server.order.OrderLog;
+import com.shopping.server.order.UserOrderIndex;
+import com.shopping.server.recommend.RecommendationEngine;
+import com.shopping.server.persist.ChangeJournal;
+import com.shopping.server.persist.ShopStore;
+import com.shopping.server.session.SessionRegistry;
+import com.shopping.server.socket.codec.BinaryMessageCodec;
+import com.shopping.server.socket.codec.ProtocolDetector;
+import com.shopping.server.socket.command.BatchRequest;
+import com.shopping.server.socket.command.CartItemRequest;
+import com.shopping.server.socket.command.CommandRegistry;
+import com.shopping.server.socket.command.CreateOrderRequest;
+import com.shopping.server.socket.command.GetOrdersRequest;
+import com.shopping.server.socket.command.GetProductsRequest;
+import com.shopping.server.socket.command.LoginRequest;
+import com.shopping.server.socket.command.ProductDetailRequest;
+import com.shopping.server.socket.command.PromotionsRequest;
+import com.shopping.server.socket.command.RegisterRequest;
+import com.shopping.server.socket.command.SearchRequest;
+import com.shopping.server.socket.command.StockSubscriptionRequest;
+import com.shopping.server.socket.command.UpdateAccountRequest;
+import com.shopping.server.socket.command.UserRequest;
+import com.shopping.server.socket.dto.BatchResponse;
+import com.shopping.server.socket.dto.CartItemsResponse;
+import com.shopping.server.socket.dto.CartLine;
+import com.shopping.server.socket.dto.ProductItem;
+import com.shopping.server.socket.dto.ProductsResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import org.springframework.stereotype.Component;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.List;
 import java.nio.file.*;
 import java.time.Instant;
-import java.util.concurrent.atomic.AtomicLong;
+import java.time.format.DateTimeParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-@Component
+// 由 SocketServer 创建（需先按 profile 加载数据），不注册为 Spring bean
 @ChannelHandler.Sharable
-public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
-    private static final Map<String, ChannelHandlerContext> clientChannels = new ConcurrentHashMap<>();
+public class SocketMessageHandler extends SimpleChannelInboundHandler<Object> {
+    private static final Logger LOG = LoggerFactory.getLogger(SocketMessageHandler.class);
+    // 按消息类型的请求指标（/actuator/prometheus）
+    private static final SocketMetrics METRICS = new SocketMetrics();
+    // 当前线程正在处理的请求类型的统计，错误码与响应字节数记到它上面；未设置时记到 unknown
+    private static final ThreadLocal<SocketMetrics.TypeStats> CURRENT = new ThreadLocal<>();
+    // 连接会话：登录用户名挂在 Channel 属性上，另有 用户名 -> 连接 的反向索引
+    private static final SessionRegistry SESSIONS = new SessionRegistry();
     // 临时内存用户存储（演示用）：用户名 -> 明文密码
     // TODO: 替换为数据库存储，并对密码进行哈希（如 BCrypt）
     private static final Map<String, String> userStore = new ConcurrentHashMap<>();
     // 用户资料：username -> { phone: "", ... }
     private static final Map<String, Map<String,Object>> userProfiles = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    // 消息类型分发表（构造时登记，之后只读）
+    private final CommandRegistry commands = new CommandRegistry(objectMapper);
+    // 每个连接绑定的业务线程（同一连接内的请求按到达顺序串行处理）
+    private static final AttributeKey<EventExecutor> BUSINESS_EXECUTOR = AttributeKey.valueOf("businessExecutor");
+    // 业务线程池，为 null 时直接在 I/O 线程上处理
+    private final EventExecutorGroup businessGroup;
+
+    public SocketMessageHandler() {
+        this(null);
+    }
+
+    public SocketMessageHandler(EventExecutorGroup businessGroup) {
+        this.businessGroup = businessGroup;
+        startPersistence(null);
+        registerCommands();
+    }
     private static final ObjectMapper PERSIST = new ObjectMapper();
     // 简易内存购物车：用户名 -> 购物车条目列表
     private static final Map<String, List<Map<String, Object>>> carts = new ConcurrentHashMap<>();
-    // 简易订单存储（演示用）：订单ID 自增 + 持久化文件
-    private static final List<Map<String, Object>> orders = new CopyOnWriteArrayList<>();
-    private static final AtomicLong ORDER_SEQ = new AtomicLong(1);
-    // 简易商品库（内存静态数据）
-    private static final List<Map<String, Object>> CATALOG = new CopyOnWriteArrayList<>();
+    // 订单存储：固定大小的段追加写入，订单ID与槽位对应（按ID读取为 O(1)）
+    private static final OrderLog ORDERS = new OrderLog(4096, PERSIST);
+    // 按用户分桶的订单索引（只存订单ID，新到旧，游标分页）
+    private static final UserOrderIndex ORDER_INDEX = new UserOrderIndex(ORDERS::get);
+    // 商品目录（内存，按商品ID索引）
+    private static final ProductCatalog CATALOG = new ProductCatalog();
+    // 商品名称/描述倒排索引，随目录变更自动更新
+    private static final ProductSearchIndex SEARCH = new ProductSearchIndex(CATALOG);
+    // 促销商品排行（按折扣力度 / 价格区间），随目录变更自动更新
+    private static final PromotionIndex PROMOTIONS = new PromotionIndex(CATALOG);
+    // 库存预占（每个 SKU 一个原子计数器，下单全部行原子预占）
+    private static final StockEngine STOCK = new StockEngine(CATALOG);
+    // 商品列表的有序视图（按ID/价格/库存游标分页）
+    private static final ProductSortIndex PRODUCT_PAGES = new ProductSortIndex(CATALOG, STOCK);
+    // 基于共同购买的个性化推荐（后台重算模型）
+    private static final RecommendationEngine RECOMMEND = new RecommendationEngine();
+    // 预先编码好的热点响应（首页、商品分页），按目录/库存版本号失效
+    private static final ResponseCache RESPONSES = new ResponseCache();
+    // 库存变化推送：连接订阅商品，下单后合并推送 stock_update
+    private static final StockSubscriptions STOCK_PUSH = new StockSubscriptions(id -> {
+        CatalogProduct p = CATALOG.get(id);
+        return p == null ? -1 : p.getStock();
+    });
+
+    // 简易持久化：JSON 快照文件 + 追加写变更日志
+    private static final Path DATA_DIR = Paths.get("server-data");
+    private static final Path USERS_FILE = DATA_DIR.resolve("users.json");
+    private static final Path USERS_PROFILE_FILE = DATA_DIR.resolve("users_profile.json");
+    private static final Path CARTS_FILE = DATA_DIR.resolve("carts.json");
+    private static final Path ORDERS_FILE = DATA_DIR.resolve("orders.json");
+    // 每次变更只追加一条记录，后台批量刷盘，定期写快照到上面的 JSON 文件
+    private static final ChangeJournal JOURNAL = new ChangeJournal(DATA_DIR.resolve("journal"), PERSIST);
+
+    // 数据库持久化（jpa profile），为 null 时使用上面的文件快照 + 变更日志
+    private static volatile ShopStore DB;
+    private static boolean persistenceStarted;
+    // 预置商品（文件模式直接放入目录；数据库模式仅在商品表为空时写入）
+    private static final List<CatalogProduct> SEED = new ArrayList<>();
 
     static {
+        // 预占、归还（订单写入失败）、补充库存都通知订阅者（只登记，推送在各连接的 I/O 线程上合并进行）
+        STOCK.addListener(STOCK_PUSH::publish);
+        List<CatalogProduct> seed = SEED;
+        seed.add(product(1001, "苹果 iPhone", 5999.00));
+        seed.add(product(1002, "小米 手机", 1999.00));
+        seed.add(product(1003, "华为 Mate", 4999.00));
+        seed.add(product(1004, "联想 笔记本", 6999.00));
+        seed.add(product(1005, "罗技 鼠标", 199.00));
+        seed.add(product(1006, "机械键盘", 399.00));
+        seed.add(product(1007, "显示器 27寸", 1299.00));
+        seed.add(product(1008, "移动电源", 159.00));
+        seed.add(product(1009, "蓝牙耳机", 299.00));
+        seed.add(product(1010, "智能手表", 999.00));
+        seed.add(product(1011, "平板电脑", 2499.00));
+        seed.add(product(1012, "游戏手柄", 259.00));
+        seed.add(product(1013, "U 盘 128G", 89.00));
+        seed.add(product(1014, "移动硬盘 1T", 359.00));
+        seed.add(product(1015, "打印机", 699.00));
+    }
+
+    /**
+     * 加载数据并启动后台任务，只执行一次（先调用者生效）。
+     * SocketServer 在创建处理器前按 profile 传入数据库存储；直接构造处理器时以文件模式启动。
+     * @param store 数据库存储，null 表示使用 server-data 下的文件快照 + 变更日志
+     */
+    static synchronized void startPersistence(ShopStore store) {
+        if (persistenceStarted) return;
+        persistenceStarted = true;
         // 预置一个默认测试账户（仅用于开发调试）
         // TODO: 生产环境请移除，改为数据库初始化并使用密码哈希
         userStore.putIfAbsent("admin", "123456");
-        // 预置一些商品
-        CATALOG.add(product(1001, "苹果 iPhone", 5999.00));
-        CATALOG.add(product(1002, "小米 手机", 1999.00));
-        CATALOG.add(product(1003, "华为 Mate", 4999.00));
-        CATALOG.add(product(1004, "联想 笔记本", 6999.00));
-        CATALOG.add(product(1005, "罗技 鼠标", 199.00));
-    CATALOG.add(product(1006, "机械键盘", 399.00));
-    CATALOG.add(product(1007, "显示器 27寸", 1299.00));
-    CATALOG.add(product(1008, "移动电源", 159.00));
-    CATALOG.add(product(1009, "蓝牙耳机", 299.00));
-    CATALOG.add(product(1010, "智能手表", 999.00));
-    CATALOG.add(product(1011, "平板电脑", 2499.00));
-    CATALOG.add(product(1012, "游戏手柄", 259.00));
-    CATALOG.add(product(1013, "U 盘 128G", 89.00));
-    CATALOG.add(product(1014, "移动硬盘 1T", 359.00));
-    CATALOG.add(product(1015, "打印机", 699.00));
-        // 尝试从本地文件恢复用户与购物车
-        try { loadFromDisk(); } catch (Exception ignore) {}
+        if (store != null) {
+            // 数据库不可用时直接失败，不退回文件模式（否则两边数据分叉）
+            loadFromStore(store);
+            DB = store;
+        } else {
+            CATALOG.putAll(SEED);
+            // 尝试从本地文件恢复用户与购物车
+            try { loadFromDisk(); } catch (Exception e) { LOG.warn("Load server-data failed", e); }
+            // 变更日志无法启动时不继续服务（否则所有变更都不会落盘）
+            try { JOURNAL.start(SocketMessageHandler::writeSnapshot); } catch (IOException e) { throw new IllegalStateException("Start journal failed", e); }
+        }
+        RECOMMEND.start();
     }
 
-    // 简易重复请求抑制：每个连接，若在窗口期内收到完全相同的 raw 字符串，则忽略
-    private static final long DEDUP_WINDOW_MS = 400; // 400ms 时间窗口
-    private static final Map<ChannelHandlerContext, Map<String, Long>> recentByCtx = new ConcurrentHashMap<>();
-
-    // 简易持久化（JSON 文件）
-    private static final Path DATA_DIR = Paths.get("server-data");
-    private static final Path USERS_FILE = DATA_DIR.resolve("users.json");
-    private static final Path USERS_PROFILE_FILE = DATA_DIR.resolve("users_profile.json");
-    private static final Path CARTS_FILE = DATA_DIR.resolve("carts.json");
-    private static final Path ORDERS_FILE = DATA_DIR.resolve("orders.json");
     private static void ensureDataDir() throws Exception { if (!Files.exists(DATA_DIR)) Files.createDirectories(DATA_DIR); }
-    private static synchronized void saveUsers() throws Exception { ensureDataDir(); PERSIST.writeValue(USERS_FILE.toFile(), userStore); }
-    private static synchronized void saveProfiles() throws Exception { ensureDataDir(); PERSIST.writeValue(USERS_PROFILE_FILE.toFile(), userProfiles); }
-    private static synchronized void saveCarts() throws Exception { ensureDataDir(); PERSIST.writeValue(CARTS_FILE.toFile(), carts); }
-    private static synchronized void saveOrders() throws Exception { ensureDataDir(); PERSIST.writeValue(ORDERS_FILE.toFile(), orders); }
+
+    /** 变更日志（供 SocketServer 按配置调整刷盘策略、停机时刷盘） */
+    static ChangeJournal journal() { return JOURNAL; }
+
+    static RecommendationEngine recommendations() { return RECOMMEND; }
+
+    static StockSubscriptions stockPush() { return STOCK_PUSH; }
+
+    static SocketMetrics metrics() { return METRICS; }
+
+    /** 商品目录（供基准测试装入大目录） */
+    static ProductCatalog catalog() { return CATALOG; }
+
+    /** 开启封存订单段转储到 server-data/order-segments（内存映射只读访问） */
+    static void spillSealedOrderSegments() throws Exception { ORDERS.enableSpill(DATA_DIR.resolve("order-segments")); }
+
+    private static void journalUser(String username) {
+        String pwd = userStore.get(username);
+        if (DB != null) {
+            // 资料与密码同在 clients 表，一并写入；改名由 renameUser 处理，旧用户名无需删除
+            if (pwd != null) DB.saveUser(username, pwd, userProfiles.get(username));
+            return;
+        }
+        JOURNAL.append("user", username, () -> userStore.get(username));
+    }
+    private static void journalProfile(String username) {
+        // 数据库模式下已随 journalUser 写入
+        if (DB != null) return;
+        JOURNAL.append("profile", username, () -> userProfiles.get(username));
+    }
+    private static void journalCart(String cartKey) {
+        if (DB != null) { DB.saveCart(cartKey, carts.get(cartKey)); return; }
+        JOURNAL.append("cart", cartKey, () -> carts.get(cartKey));
+    }
+    // 订单商品计入推荐模型（只入队，由推荐引擎后台线程累加）
+    private static void recordPurchase(Map<String,Object> order) {
+        Object items = order.get("items");
+        if (!(items instanceof List)) return;
+        List<?> list = (List<?>) items;
+        long[] ids = new long[list.size()];
+        int n = 0;
+        for (Object it : list) {
+            if (it instanceof Map) ids[n++] = toProductId(((Map<?,?>) it).get("productId"));
+        }
+        RECOMMEND.record((String) order.get("username"), n == ids.length ? ids : Arrays.copyOf(ids, n));
+    }
+
+    private static void journalOrder(Map<String,Object> order) {
+        // 数据库模式下订单只在创建时插入一次，用户名变更通过 clients 表生效
+        if (DB != null) return;
+        JOURNAL.append("order", String.valueOf(order.get("orderId")), () -> order);
+    }
+
+    // 新订单落盘：数据库模式同步写库（失败则抛出，由调用方归还库存），文件模式追加日志
+    private static void persistNewOrder(Map<String,Object> order) {
+        if (DB != null) DB.insertOrder(order); else journalOrder(order);
+    }
+
+    // 由日志写线程调用（基准测试也直接调用）：全量写出四个快照文件，每个文件先写临时文件再原子替换
+    static void writeSnapshot() throws Exception {
+        ensureDataDir();
+        writeAtomically(USERS_FILE, userStore);
+        writeAtomically(USERS_PROFILE_FILE, userProfiles);
+        writeAtomically(CARTS_FILE, carts);
+        // 订单逐条流式写出，已转储的段直接拷贝原始 JSON
+        Path tmp = ORDERS_FILE.resolveSibling(ORDERS_FILE.getFileName() + ".tmp");
+        try (JsonGenerator gen = PERSIST.getFactory().createGenerator(tmp.toFile(), JsonEncoding.UTF8)) {
+            ORDERS.writeTo(gen);
+        }
+        Files.move(tmp, ORDERS_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    private static void writeAtomically(Path file, Object value) throws Exception {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        PERSIST.writeValue(tmp.toFile(), value);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void loadFromStore(ShopStore store) {
+        CATALOG.putAll(store.loadCatalog(SEED));
+        userStore.putAll(store.loadUsers());
+        userProfiles.putAll(store.loadProfiles());
+        store.loadCarts().forEach((k, v) -> carts.put(k, new CopyOnWriteArrayList<>(v)));
+        ORDERS.recover(store.loadOrders());
+        ORDERS.forEach(o -> {
+            ORDER_INDEX.add((String) o.get("username"), ((Number) o.get("orderId")).longValue());
+            recordPurchase(o);
+        });
+        // 预置账户写入数据库
+        store.saveUser("admin", userStore.get("admin"), userProfiles.get("admin"));
+    }
+
     private static synchronized void loadFromDisk() throws Exception {
         ensureDataDir();
         if (Files.exists(USERS_FILE)) {
@@ -86,192 +291,519 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         }
         if (Files.exists(CARTS_FILE)) {
             Map<String, List<Map<String,Object>>> m = PERSIST.readValue(CARTS_FILE.toFile(), new TypeReference<Map<String, List<Map<String,Object>>>>(){});
-            if (m != null) carts.putAll(m);
+            if (m != null) m.forEach((k, v) -> carts.put(k, new CopyOnWriteArrayList<>(v)));
         }
+        // 订单按 orderId 归并，日志中的 order.put 覆盖快照中的同号订单
+        Map<String, Map<String,Object>> orderById = new LinkedHashMap<>();
         if (Files.exists(ORDERS_FILE)) {
             List<Map<String,Object>> m = PERSIST.readValue(ORDERS_FILE.toFile(), new TypeReference<List<Map<String,Object>>>(){});
-            if (m != null) {
-                orders.addAll(m);
-                // 更新 ORDER_SEQ
-                long maxId = 0;
-                for (Map<String,Object> o : orders) {
-                    Object oid = o.get("orderId");
-                    if (oid instanceof Number) maxId = Math.max(maxId, ((Number) oid).longValue());
-                }
-                ORDER_SEQ.set(Math.max(ORDER_SEQ.get(), maxId + 1));
-            }
+            if (m != null) for (Map<String,Object> o : m) orderById.put(String.valueOf(o.get("orderId")), o);
         }
+        // 回放快照之后的日志
+        JOURNAL.replay((op, key, value) -> {
+            switch (op) {
+                case "user.put": userStore.put(key, value.asText()); break;
+                case "user.remove": userStore.remove(key); break;
+                case "profile.put": userProfiles.put(key, new ConcurrentHashMap<>(PERSIST.convertValue(value, new TypeReference<Map<String,Object>>(){}))); break;
+                case "profile.remove": userProfiles.remove(key); break;
+                case "cart.put": carts.put(key, new CopyOnWriteArrayList<>(PERSIST.convertValue(value, new TypeReference<List<Map<String,Object>>>(){}))); break;
+                case "cart.remove": carts.remove(key); break;
+                case "order.put": orderById.put(key, PERSIST.convertValue(value, new TypeReference<Map<String,Object>>(){})); break;
+                default: LOG.warn("Unknown journal op: {}", op);
+            }
+        });
+        // 新订单ID从恢复订单的最大ID + 1 开始，并重建按用户的订单索引
+        ORDERS.recover(orderById.values());
+        ORDERS.forEach(o -> {
+            ORDER_INDEX.add((String) o.get("username"), ((Number) o.get("orderId")).longValue());
+            recordPurchase(o);
+        });
     }
+
+    // 简易重复请求抑制：每个连接，若在窗口期内收到完全相同的 raw 字符串，则忽略
+    private static final long DEDUP_WINDOW_MS = 400; // 400ms 时间窗口
+    // 每个连接记录最近多少条请求的哈希
+    private static final int DEDUP_CAPACITY = 32;
+    private static final AttributeKey<DedupRing> DEDUP = AttributeKey.valueOf("socket.dedup");
+    private static final AttributeKey<Serial> SERIAL = AttributeKey.valueOf("socket.serial");
+
     
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, String msg) throws Exception {
-        // 基本健壮性处理：忽略空行，打印原始消息便于排查
-        if (msg == null) return;
-        String raw = msg.trim();
-        if (raw.isEmpty()) return;
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+        long receivedAt = System.nanoTime();
+        // 基本健壮性处理：忽略空行
+        // JSON 连接收到的是原始字符串，二进制连接收到的是已解码的 Map
+        Object raw;
+        int size;
+        long hash;
+        if (msg instanceof String) {
+            raw = ((String) msg).trim();
+            if (((String) raw).isEmpty()) return;
+            size = ByteBufUtil.utf8Bytes((String) msg);
+            hash = DedupRing.hash((String) raw);
+        } else if (msg instanceof Map) {
+            raw = msg;
+            Integer frame = ctx.channel().attr(BinaryMessageCodec.FRAME_BYTES).get();
+            size = frame == null ? 0 : frame;
+            Long frameHash = ctx.channel().attr(BinaryMessageCodec.FRAME_HASH).get();
+            // 没有帧哈希（未经过二进制编解码器）时记为 0，不做去重
+            hash = frameHash == null ? 0 : frameHash;
+        } else {
+            return;
+        }
         // 去重：相同 raw 在短时间窗口内仅处理一次
         long now = System.currentTimeMillis();
-        Map<String, Long> recent = recentByCtx.computeIfAbsent(ctx, k -> new ConcurrentHashMap<>());
-        Long lastTs = recent.get(raw);
-        if (lastTs != null && (now - lastTs) < DEDUP_WINDOW_MS) {
+        DedupRing recent = ctx.channel().attr(DEDUP).get();
+        if (recent == null) {
+            recent = new DedupRing(DEDUP_CAPACITY, DEDUP_WINDOW_MS);
+            ctx.channel().attr(DEDUP).set(recent);
+        }
+        if (hash != 0 && recent.isDuplicate(hash, now)) {
             // 忽略重复消息，不再处理也不再打印
             return;
         }
-        recent.put(raw, now);
-        System.out.println("Received: " + raw);
 
-        Map<String, Object> request;
+        // 阻塞操作（文件持久化、数据库）不得占用 I/O 线程：转交业务线程处理
+        EventExecutor executor = businessExecutor(ctx);
+        if (executor == null) {
+            process(ctx, raw, receivedAt, size);
+            return;
+        }
+        Runnable task = () -> {
+            try {
+                process(ctx, raw, receivedAt, size);
+            } catch (Throwable t) {
+                exceptionCaught(ctx, t);
+            }
+        };
         try {
-            request = objectMapper.readValue(raw, new TypeReference<Map<String, Object>>() {});
-        } catch (Exception parseEx) {
-            System.out.println("Invalid JSON, error=" + parseEx.getMessage());
+            // batch 的并行子请求未完成时暂存，完成后按序执行
+            executor.execute(() -> {
+                if (!serial(ctx).holdIfSuspended(task)) task.run();
+            });
+        } catch (RejectedExecutionException overloaded) {
+            // 业务队列已满：快速失败，交由客户端稍后重试
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("type", "error");
+            resp.put("code", 1003);
+            resp.put("message", "服务器繁忙，请稍后重试");
+            reply(ctx, resp);
+            ctx.flush();
+            METRICS.unknown().record(System.nanoTime() - receivedAt, size);
+        }
+    }
+
+    private EventExecutor businessExecutor(ChannelHandlerContext ctx) {
+        if (businessGroup == null) return null;
+        EventExecutor executor = ctx.channel().attr(BUSINESS_EXECUTOR).get();
+        if (executor == null) {
+            executor = businessGroup.next();
+            ctx.channel().attr(BUSINESS_EXECUTOR).set(executor);
+        }
+        return executor;
+    }
+
+    private static Serial serial(ChannelHandlerContext ctx) {
+        Serial serial = ctx.channel().attr(SERIAL).get();
+        if (serial == null) {
+            Serial created = new Serial();
+            serial = ctx.channel().attr(SERIAL).setIfAbsent(created);
+            if (serial == null) serial = created;
+        }
+        return serial;
+    }
+
+    /**
+     * 连接内请求的顺序执行状态。batch 的只读子请求分发到多个业务线程时挂起：
+     * 此后到达的请求暂存，batch 写回响应后在连接的业务线程上按到达顺序执行。
+     */
+    private static final class Serial {
+        private final ArrayDeque<Runnable> held = new ArrayDeque<>();
+        private boolean suspended;
+        private boolean batchInFlight;
+
+        synchronized boolean holdIfSuspended(Runnable task) {
+            if (!suspended) return false;
+            held.add(task);
+            return true;
+        }
+
+        synchronized void suspend() {
+            suspended = true;
+            batchInFlight = true;
+        }
+
+        synchronized void batchDone() {
+            batchInFlight = false;
+        }
+
+        // 取出下一个暂存的请求；又有 batch 挂起时返回 null，暂存已空时解除挂起
+        synchronized Runnable next() {
+            if (batchInFlight) return null;
+            Runnable task = held.poll();
+            if (task == null) suspended = false;
+            return task;
+        }
+    }
+
+    private void process(ChannelHandlerContext ctx, Object raw, long receivedAt, int size) throws Exception {
+        try {
+            dispatch(ctx, raw);
+        } finally {
+            // 一个请求产生的全部响应只 flush 一次
+            ctx.flush();
+            SocketMetrics.TypeStats stats = currentStats();
+            CURRENT.remove();
+            long nanos = System.nanoTime() - receivedAt;
+            stats.record(nanos, size);
+            // 抽样记录请求日志（不含消息内容，避免密码等字段落入日志）
+            if (LOG.isDebugEnabled() && METRICS.sampled()) {
+                LOG.debug("request type={} latency_us={} bytes_in={} remote={}", stats.type(), nanos / 1000, size, ctx.channel().remoteAddress());
+            }
+        }
+    }
+
+    private static SocketMetrics.TypeStats currentStats() {
+        SocketMetrics.TypeStats stats = CURRENT.get();
+        return stats != null ? stats : METRICS.unknown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(ChannelHandlerContext ctx, Object raw) throws Exception {
+        CommandRegistry.Invocation invocation;
+        try {
+            invocation = raw instanceof Map ? commands.bind((Map<String, Object>) raw) : commands.parse((String) raw);
+        } catch (IOException parseEx) {
+            LOG.debug("invalid request error={}", parseEx.getMessage());
             Map<String, Object> resp = new HashMap<>();
             resp.put("type", "error");
             resp.put("code", 1002);
-            resp.put("message", "Invalid JSON");
-            ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+            resp.put("message", parseEx instanceof JsonParseException ? "Invalid JSON" : "Invalid parameters");
+            reply(ctx, resp);
             return; // 不关闭连接，允许客户端继续发送
         }
 
-        String type = (String) request.get("type");
+        if (!invocation.isKnown()) {
+            LOG.debug("unknown message type={}", invocation.getType());
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("type", "error");
+            resp.put("code", 1002);
+            resp.put("message", "Unknown message type: " + invocation.getType());
+            reply(ctx, resp);
+            return;
+        }
+        CURRENT.set(METRICS.stats(invocation.getType()));
+        invocation.run(ctx);
+    }
 
-        switch (type) {
-            case "login":
-                handleLogin(ctx, request);
-                break;
-            case "register":
-                handleRegister(ctx, request);
-                break;
-            case "get_products":
-                handleGetProducts(ctx, request);
-                break;
-            case "search_products":
-                handleSearchProducts(ctx, request);
-                break;
-            case "get_cart":
-                handleGetCart(ctx, request);
-                break;
-            case "remove_from_cart":
-                handleRemoveFromCart(ctx, request);
-                break;
-            case "set_cart_quantity":
-                handleSetCartQuantity(ctx, request);
-                break;
-            case "checkout":
-                handleCheckout(ctx, request);
-                break;
-            case "create_order":
-                handleCreateOrder(ctx, request);
-                break;
-            case "get_orders":
-                handleGetOrders(ctx, request);
-                break;
-            case "get_carousel":
-                handleGetCarousel(ctx);
-                break;
-            case "get_recommendations":
-                handleGetRecommendations(ctx);
-                break;
-            case "get_promotions":
-                handleGetPromotions(ctx);
-                break;
-            case "search":
-                handleSearch(ctx, request);
-                break;
-            case "get_product_detail":
-                handleGetProductDetail(ctx, request);
-                break;
-            case "add_to_cart":
-                handleAddToCart(ctx, request);
-                break;
-            case "clear_cart":
-                handleClearCart(ctx, request);
-                break;
-            case "get_account_info":
-                handleGetAccountInfo(ctx, request);
-                break;
-            case "update_account_info":
-                handleUpdateAccountInfo(ctx, request);
-                break;
-            // 添加更多消息处理类型
-            default:
-                System.out.println("Unknown message type: " + type);
+    // 消息类型 -> 请求类 + 处理器（添加更多消息处理类型时在这里登记）
+    private void registerCommands() {
+        commands.register("login", LoginRequest.class, this::handleLogin);
+        commands.register("register", RegisterRequest.class, this::handleRegister);
+        commands.registerReadOnly("get_products", GetProductsRequest.class, this::handleGetProducts);
+        commands.registerReadOnly("search_products", SearchRequest.class, this::handleSearchProducts);
+        commands.registerReadOnly("get_cart", UserRequest.class, this::handleGetCart);
+        commands.register("remove_from_cart", CartItemRequest.class, this::handleRemoveFromCart);
+        commands.register("set_cart_quantity", CartItemRequest.class, this::handleSetCartQuantity);
+        commands.register("checkout", UserRequest.class, this::handleCheckout);
+        commands.register("create_order", CreateOrderRequest.class, this::handleCreateOrder);
+        commands.registerReadOnly("get_orders", GetOrdersRequest.class, this::handleGetOrders);
+        commands.registerReadOnly("get_carousel", UserRequest.class, (ctx, req) -> handleGetCarousel(ctx));
+        commands.registerReadOnly("get_recommendations", UserRequest.class, this::handleGetRecommendations);
+        commands.registerReadOnly("get_promotions", PromotionsRequest.class, this::handleGetPromotions);
+        commands.registerReadOnly("search", SearchRequest.class, this::handleSearch);
+        commands.registerReadOnly("get_product_detail", ProductDetailRequest.class, this::handleGetProductDetail);
+        commands.register("add_to_cart", CartItemRequest.class, this::handleAddToCart);
+        commands.register("clear_cart", UserRequest.class, this::handleClearCart);
+        commands.registerReadOnly("get_account_info", UserRequest.class, this::handleGetAccountInfo);
+        commands.register("update_account_info", UpdateAccountRequest.class, this::handleUpdateAccountInfo);
+        commands.register("batch", BatchRequest.class, this::handleBatch);
+        commands.register("subscribe_stock", StockSubscriptionRequest.class, this::handleSubscribeStock);
+        commands.register("unsubscribe_stock", StockSubscriptionRequest.class, this::handleUnsubscribeStock);
+    }
+
+    /**
+     * 按连接协议写回响应（Map 或 dto 包中的响应对象）：
+     * 在当前线程编码为 JSON 行或二进制帧（BinaryMessageCodec 对 ByteBuf 直接放行），并计入当前请求类型的指标
+     */
+    private void reply(ChannelHandlerContext ctx, Object resp) throws Exception {
+        SocketMetrics.TypeStats stats = currentStats();
+        if (resp instanceof Map) {
+            Object code = ((Map<?, ?>) resp).get("code");
+            if (code instanceof Integer) stats.error((Integer) code);
+        }
+        List<Object> batch = BATCH_SINK.get();
+        if (batch != null) {
+            // batch 子请求：响应收集起来，最后合并成一条 batch_response
+            batch.add(resp);
+            return;
+        }
+        // 只写不刷，每个请求处理完后统一 flush 一次（见 process）
+        ByteBuf buf = Boolean.TRUE.equals(ctx.channel().attr(ProtocolDetector.BINARY).get())
+                ? BinaryMessageCodec.encodeFrame(ctx.alloc(), resp) : ResponseWriter.jsonLine(ctx.alloc(), resp);
+        stats.sent(buf.readableBytes());
+        ctx.write(buf);
+    }
+
+    /**
+     * 写回可缓存的响应：命中时直接写出预先编码好的缓冲区，不再构建和序列化响应对象
+     * @param key 消息类型 + 参数
+     * @param version 响应所依赖数据的版本号
+     * @param builder 未命中时生成响应
+     */
+    private void replyCached(ChannelHandlerContext ctx, String key, long version, Callable<Object> builder) throws Exception {
+        if (BATCH_SINK.get() != null) {
+            // batch 子请求需要响应对象本身
+            reply(ctx, builder.call());
+            return;
+        }
+        boolean binary = Boolean.TRUE.equals(ctx.channel().attr(ProtocolDetector.BINARY).get());
+        ByteBuf buf = RESPONSES.get(binary, key, version, builder);
+        currentStats().sent(buf.readableBytes());
+        ctx.write(buf);
+    }
+
+    // 每次返回的推荐商品数
+    private static final int RECOMMENDATION_COUNT = 4;
+
+    // 商品信息或任一商品库存变化后改变（两个版本号都只增不减）
+    private static long catalogVersion() {
+        return CATALOG.version() + STOCK.version();
+    }
+
+    // 当前线程正在执行的 batch 子请求的响应收集器
+    private static final ThreadLocal<List<Object>> BATCH_SINK = new ThreadLocal<>();
+    private static final int MAX_BATCH_SIZE = 32;
+
+    private void handleBatch(ChannelHandlerContext ctx, BatchRequest request) throws Exception {
+        List<Map<String, Object>> subs = request.getRequests();
+        if (subs == null || subs.isEmpty() || subs.size() > MAX_BATCH_SIZE) {
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("type", "error");
+            resp.put("code", 1002);
+            resp.put("message", "batch 需包含 1~" + MAX_BATCH_SIZE + " 个子请求");
+            reply(ctx, resp);
+            return;
+        }
+        int n = subs.size();
+        List<CommandRegistry.Invocation> calls = new ArrayList<>(n);
+        List<List<Object>> results = new ArrayList<>(n);
+        for (Map<String, Object> sub : subs) {
+            List<Object> out = new ArrayList<>(2);
+            results.add(out);
+            CommandRegistry.Invocation inv = null;
+            String error = null;
+            try {
+                inv = sub == null ? null : commands.bind(sub);
+                if (inv == null || !inv.isKnown() || "batch".equals(inv.getType())) {
+                    error = "Unknown message type: " + (inv == null ? null : inv.getType());
+                    inv = null;
+                }
+            } catch (IOException bindEx) {
+                error = "Invalid parameters";
+            }
+            if (error != null) {
                 Map<String, Object> resp = new HashMap<>();
                 resp.put("type", "error");
                 resp.put("code", 1002);
-                resp.put("message", "Unknown message type: " + type);
-                ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+                resp.put("message", error);
+                out.add(resp);
+            }
+            calls.add(inv);
         }
+        runBatch(ctx, calls, results, 0);
     }
 
-    private static Map<String, Object> product(int id, String name, double price) {
-        Map<String, Object> m = new HashMap<>();
-        m.put("product_id", id);
-        m.put("name", name);
-        m.put("price", price);
-        m.put("quantity", 1);
-        m.put("description", name + " 描述");
-        m.put("image_url", "https://example.com/product/" + id + ".jpg");
-        m.put("stock", 100);
-        m.put("on_sale", false);
-        return m;
+    /**
+     * 从 from 开始依次执行 batch 子请求：连续的只读子请求分发到多个业务线程并行执行，
+     * 全部完成后回到连接的业务线程继续；会修改状态的子请求按顺序在连接的业务线程执行。
+     * 并行期间连接挂起，后续请求在 batch_response 写回后才执行。
+     */
+    private void runBatch(ChannelHandlerContext ctx, List<CommandRegistry.Invocation> calls,
+                          List<List<Object>> results, int from) {
+        int i = from;
+        int n = calls.size();
+        while (i < n) {
+            CommandRegistry.Invocation inv = calls.get(i);
+            if (inv == null) { i++; continue; }
+            int end = i;
+            while (end < n && (calls.get(end) == null || calls.get(end).isReadOnly())) end++;
+            if (businessGroup == null || end - i < 2) {
+                runCaptured(ctx, inv, results.get(i));
+                i++;
+                continue;
+            }
+            AtomicInteger pending = new AtomicInteger(end - i);
+            int next = end;
+            serial(ctx).suspend();
+            for (int k = i; k < end; k++) {
+                CommandRegistry.Invocation call = calls.get(k);
+                List<Object> out = results.get(k);
+                Runnable task = () -> {
+                    if (call != null) runCaptured(ctx, call, out);
+                    if (pending.decrementAndGet() == 0) resumeBatch(ctx, calls, results, next);
+                };
+                try {
+                    businessGroup.next().execute(task);
+                } catch (RejectedExecutionException overloaded) {
+                    // 业务队列已满：在当前线程执行，batch 整体不失败
+                    task.run();
+                }
+            }
+            return;
+        }
+        List<Object> responses = new ArrayList<>();
+        for (List<Object> out : results) responses.addAll(out);
+        // 并行后的续行不在 process 中，响应字节显式记到 batch
+        SocketMetrics.TypeStats prev = CURRENT.get();
+        CURRENT.set(METRICS.stats("batch"));
+        try {
+            reply(ctx, new BatchResponse(responses));
+        } catch (Exception e) {
+            exceptionCaught(ctx, e);
+        } finally {
+            restoreStats(prev);
+        }
+        ctx.flush();
+    }
+
+    // 并行子请求全部完成：回到连接的业务线程执行剩余子请求并写回，再依次执行挂起期间暂存的请求
+    private void resumeBatch(ChannelHandlerContext ctx, List<CommandRegistry.Invocation> calls,
+                             List<List<Object>> results, int from) {
+        Runnable resume = () -> {
+            Serial serial = serial(ctx);
+            serial.batchDone();
+            runBatch(ctx, calls, results, from);
+            Runnable held;
+            while ((held = serial.next()) != null) held.run();
+        };
+        try {
+            businessExecutor(ctx).execute(resume);
+        } catch (RejectedExecutionException overloaded) {
+            // 连接的业务队列已满：在当前线程继续。连接仍处于挂起状态，不会与该连接的其他请求并发
+            resume.run();
+        }
     }
 
-    private void handleGetProducts(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        int page = ((Number)request.getOrDefault("page", 1)).intValue();
-        int size = ((Number)request.getOrDefault("size", 10)).intValue();
+    private void runCaptured(ChannelHandlerContext ctx, CommandRegistry.Invocation inv, List<Object> out) {
+        BATCH_SINK.set(out);
+        // 子请求按自身类型计数（不计请求字节，已计入 batch）
+        SocketMetrics.TypeStats prev = CURRENT.get();
+        SocketMetrics.TypeStats stats = METRICS.stats(inv.getType());
+        CURRENT.set(stats);
+        long start = System.nanoTime();
+        try {
+            inv.run(ctx);
+        } catch (Exception e) {
+            LOG.warn("batch sub-request failed type={} error={}", inv.getType(), e.toString());
+        } finally {
+            BATCH_SINK.remove();
+            stats.record(System.nanoTime() - start, 0);
+            restoreStats(prev);
+        }
+    }
+
+    private static void restoreStats(SocketMetrics.TypeStats prev) {
+        if (prev == null) CURRENT.remove(); else CURRENT.set(prev);
+    }
+
+    private static CatalogProduct product(int id, String name, double price) {
+        return new CatalogProduct(id, name, price, name + " 描述",
+                "https://example.com/product/" + id + ".jpg", 100, false);
+    }
+
+    // 请求中的商品ID可能是数字或数字字符串；无法解析时返回 -1
+    private static long toProductId(Object pid) {
+        if (pid instanceof Number) return ((Number) pid).longValue();
+        if (pid instanceof String) {
+            try { return Long.parseLong(((String) pid).trim()); } catch (NumberFormatException ignore) {}
+        }
+        return -1;
+    }
+
+    private static CatalogProduct findProduct(Object pid) {
+        long id = toProductId(pid);
+        return id < 0 ? null : CATALOG.get(id);
+    }
+
+    // 第 page 页（从 1 开始）的起始下标；按 long 计算，超出 int 范围时取 Integer.MAX_VALUE（返回空页）
+    private static int pageOffset(int page, int size) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) (Math.max(1, page) - 1) * Math.max(0, size));
+    }
+
+    private static boolean sameProduct(Object pid, Object other) {
+        long id = toProductId(pid);
+        return id >= 0 && id == toProductId(other);
+    }
+
+    private void handleGetProducts(ChannelHandlerContext ctx, GetProductsRequest request) throws Exception {
+        int page = request.getPage();
+        int size = request.getSize();
         if (page < 1) page = 1; if (size < 1) size = 10;
-        int total = CATALOG.size();
-        int from = Math.min((page - 1) * size, total);
-        int to = Math.min(from + size, total);
-        List<Map<String,Object>> slice = new CopyOnWriteArrayList<>(CATALOG.subList(from, to));
-        // 映射到文档字段
-        List<Map<String,Object>> products = new CopyOnWriteArrayList<>();
-        for (Map<String,Object> p : slice) {
-            Map<String,Object> it = new HashMap<>();
-            it.put("id", p.get("product_id"));
-            it.put("name", p.get("name"));
-            it.put("price", p.get("price"));
-            it.put("description", p.get("description"));
-            it.put("imageUrl", p.get("image_url"));
-            it.put("stock", p.get("stock"));
-            products.add(it);
+        if (request.getSort() != null || request.getOrder() != null || request.getCursor() != null) {
+            handleGetProductsByCursor(ctx, request, size);
+            return;
         }
-        Map<String,Object> resp = new HashMap<>();
-        resp.put("type", "products_response");
-        resp.put("total", total);
-        resp.put("products", products);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
-    }
-
-    private void handleSearchProducts(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String keyword = String.valueOf(request.getOrDefault("keyword", "")).trim().toLowerCase();
-        List<Map<String,Object>> results = new CopyOnWriteArrayList<>();
-        for (Map<String,Object> p : CATALOG) {
-            String name = String.valueOf(p.get("name")).toLowerCase();
-            if (keyword.isEmpty() || name.contains(keyword)) results.add(p);
-        }
-        List<Map<String,Object>> products = new CopyOnWriteArrayList<>();
-        for (Map<String,Object> p : results) {
-            Map<String,Object> it = new HashMap<>();
-            it.put("id", p.get("product_id"));
-            it.put("name", p.get("name"));
-            it.put("price", p.get("price"));
-            it.put("description", p.get("description"));
-            it.put("imageUrl", p.get("image_url"));
-            it.put("stock", p.get("stock"));
-            products.add(it);
+        int first = pageOffset(page, size);
+        int limit = size;
+        replyCached(ctx, "get_products:" + page + ":" + size, catalogVersion(), () -> {
+            int total = CATALOG.size();
+            int from = Math.min(first, total);
+            int to = (int) Math.min((long) from + limit, total);
+            // 映射到文档字段
+            List<ProductItem> products = new ArrayList<>(to - from);
+            for (CatalogProduct p : CATALOG.slice(from, to)) products.add(ProductItem.of(p));
+            return new ProductsResponse(total, products);
+        });
+    }
+
+    // 游标分页：按 (排序键, 商品ID) 定位，页深不影响耗时；每页只分配 size 个列表项
+    private void handleGetProductsByCursor(ChannelHandlerContext ctx, GetProductsRequest request, int size) throws Exception {
+        ProductSortIndex.SortKey key = ProductSortIndex.SortKey.parse(request.getSort());
+        String order = request.getOrder();
+        if (key == null || (order != null && !order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc"))) {
+            Map<String,Object> err = new HashMap<>();
+            err.put("type", "error");
+            err.put("code", 1002);
+            err.put("message", "排序参数无效");
+            reply(ctx, err);
+            return;
         }
-        Map<String,Object> resp = new HashMap<>();
-        resp.put("type", "products_response");
-        resp.put("total", products.size());
-        resp.put("products", products);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        boolean desc = "desc".equalsIgnoreCase(order);
+        String cursor = request.getCursor();
+        Callable<Object> builder = () -> {
+            ProductSortIndex.Page page = PRODUCT_PAGES.page(key, desc, cursor, size);
+            List<ProductItem> products = new ArrayList<>(page.getProducts().size());
+            for (CatalogProduct p : page.getProducts()) products.add(ProductItem.of(p));
+            return new ProductsResponse(CATALOG.size(), products, page.getNextCursor());
+        };
+        try {
+            // 只缓存首页：后续页的游标由客户端任意给出，缓存它们只会挤掉热点条目
+            if (cursor == null) replyCached(ctx, "get_products:" + key + ":" + desc + ":" + size, catalogVersion(), builder);
+            else reply(ctx, builder.call());
+        } catch (IllegalArgumentException e) {
+            Map<String,Object> err = new HashMap<>();
+            err.put("type", "error");
+            err.put("code", 1002);
+            err.put("message", "游标无效");
+            reply(ctx, err);
+        }
+    }
+
+    private void handleSearchProducts(ChannelHandlerContext ctx, SearchRequest request) throws Exception {
+        String keyword = request.getKeyword() == null ? "" : request.getKeyword().trim();
+        // 未携带 size 时返回全部命中（兼容旧客户端），否则按 page/size 分页
+        int size = request.getSize();
+        int page = Math.max(1, request.getPage());
+        ProductSearchIndex.Result result = SEARCH.search(keyword, size > 0 ? pageOffset(page, size) : 0, size);
+        List<ProductItem> products = new ArrayList<>(result.getProducts().size());
+        for (CatalogProduct p : result.getProducts()) products.add(ProductItem.of(p));
+        reply(ctx, new ProductsResponse(result.getTotal(), products));
     }
     
-    private void handleLogin(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String username = (String) request.get("username");
-        String password = (String) request.get("password");
+    private void handleLogin(ChannelHandlerContext ctx, LoginRequest request) throws Exception {
+        String username = request.getUsername();
+        String password = request.getPassword();
 
         Map<String, Object> response = new HashMap<>();
         response.put("type", "login_response");
@@ -285,92 +817,129 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
             if (saved != null && saved.equals(password)) {
                 response.put("success", true);
                 response.put("message", "登录成功");
-                clientChannels.put(username, ctx);
+                SESSIONS.bind(ctx.channel(), username);
             } else {
                 response.put("success", false);
                 response.put("message", saved == null ? "用户不存在，请先注册" : "密码错误");
             }
         }
 
-    ctx.writeAndFlush(objectMapper.writeValueAsString(response) + "\n");
+    reply(ctx, response);
     }
 
     private void handleGetCarousel(ChannelHandlerContext ctx) throws Exception {
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("type", "carousel_data");
-        List<Map<String, Object>> images = new CopyOnWriteArrayList<>();
-        images.add(mapOf("title", "大促海报1", "url", "https://example.com/banner1.jpg"));
-        images.add(mapOf("title", "大促海报2", "url", "https://example.com/banner2.jpg"));
-        images.add(mapOf("title", "新品上市", "url", "https://example.com/banner3.jpg"));
-        resp.put("images", images);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        // 轮播内容是固定数据，版本号恒为 0
+        replyCached(ctx, "get_carousel", 0, () -> {
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("type", "carousel_data");
+            List<Map<String, Object>> images = new ArrayList<>();
+            images.add(mapOf("title", "大促海报1", "url", "https://example.com/banner1.jpg"));
+            images.add(mapOf("title", "大促海报2", "url", "https://example.com/banner2.jpg"));
+            images.add(mapOf("title", "新品上市", "url", "https://example.com/banner3.jpg"));
+            resp.put("images", images);
+            return resp;
+        });
     }
 
-    private void handleGetRecommendations(ChannelHandlerContext ctx) throws Exception {
+    private void handleGetRecommendations(ChannelHandlerContext ctx, UserRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
+        if (!RECOMMEND.hasHistory(username)) {
+            // 无购买历史：所有人结果相同（热门商品），走响应缓存
+            replyCached(ctx, "get_recommendations", catalogVersion() + RECOMMEND.version(), () -> recommendations(null));
+            return;
+        }
+        reply(ctx, recommendations(username));
+    }
+
+    private static Map<String, Object> recommendations(String username) {
+        List<Map<String, Object>> products = new ArrayList<>(RECOMMENDATION_COUNT);
+        List<Long> seen = new ArrayList<>(RECOMMENDATION_COUNT);
+        for (long id : RECOMMEND.recommend(username, RECOMMENDATION_COUNT)) {
+            CatalogProduct p = CATALOG.get(id);
+            // 已下架的商品跳过
+            if (p == null) continue;
+            products.add(p.toMap());
+            seen.add(id);
+        }
+        // 推荐不足时按上架顺序补齐
+        for (CatalogProduct p : CATALOG.slice(0, RECOMMENDATION_COUNT * 2)) {
+            if (products.size() >= RECOMMENDATION_COUNT) break;
+            if (!seen.contains(p.getProductId())) products.add(p.toMap());
+        }
         Map<String, Object> resp = new HashMap<>();
         resp.put("type", "recommendations");
-        // 简单取前 4 个
-        resp.put("products", CATALOG.subList(0, Math.min(4, CATALOG.size())));
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        resp.put("products", products);
+        return resp;
+    }
+
+    private void handleGetPromotions(ChannelHandlerContext ctx, PromotionsRequest request) throws Exception {
+        int limit = Math.max(1, Math.min(request.getLimit(), 100));
+        if (request.getMinPrice() != null || request.getMaxPrice() != null) {
+            double min = request.getMinPrice() == null ? 0 : request.getMinPrice();
+            double max = request.getMaxPrice() == null ? Double.MAX_VALUE : request.getMaxPrice();
+            List<CatalogProduct> hits = PROMOTIONS.priceBetween(min, max);
+            reply(ctx, promotions(hits.subList(0, Math.min(limit, hits.size()))));
+            return;
+        }
+        replyCached(ctx, "get_promotions:" + limit, catalogVersion(), () -> promotions(PROMOTIONS.top(limit)));
     }
 
-    private void handleGetPromotions(ChannelHandlerContext ctx) throws Exception {
+    // 促销条目：商品字段 + 客户端展示用的 title/desc
+    private static Map<String, Object> promotions(List<CatalogProduct> products) {
+        List<Map<String, Object>> promos = new ArrayList<>(products.size());
+        for (CatalogProduct p : products) {
+            Map<String, Object> m = p.toMap();
+            m.put("title", p.getName());
+            m.put("desc", String.format("限时 %.1f 折，原价 ¥%.2f，现价 ¥%.2f",
+                    p.getDiscountPrice() / p.getPrice() * 10, p.getPrice(), p.getDiscountPrice()));
+            m.put("discount_ratio", p.discountRatio());
+            promos.add(m);
+        }
         Map<String, Object> resp = new HashMap<>();
         resp.put("type", "promotions");
-        List<Map<String, Object>> promos = new CopyOnWriteArrayList<>();
-        promos.add(mapOf("title", "开学季", "desc", "全场满 1000 减 100"));
-        promos.add(mapOf("title", "会员日", "desc", "PLUS 额外 95 折"));
         resp.put("promotions", promos);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        return resp;
     }
 
-    private void handleSearch(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String keyword = (String) request.getOrDefault("keyword", "");
-        String kw = keyword == null ? "" : keyword.trim().toLowerCase();
-        List<Map<String, Object>> results = new CopyOnWriteArrayList<>();
-        for (Map<String, Object> p : CATALOG) {
-            String name = String.valueOf(p.get("name")).toLowerCase();
-            if (kw.isEmpty() || name.contains(kw)) results.add(p);
-        }
+    private void handleSearch(ChannelHandlerContext ctx, SearchRequest request) throws Exception {
+        String keyword = request.getKeyword();
+        int size = request.getSize();
+        int page = Math.max(1, request.getPage());
+        ProductSearchIndex.Result result = SEARCH.search(keyword, size > 0 ? pageOffset(page, size) : 0, size);
+        List<Map<String, Object>> results = new ArrayList<>(result.getProducts().size());
+        for (CatalogProduct p : result.getProducts()) results.add(p.toMap());
         Map<String, Object> resp = new HashMap<>();
         resp.put("type", "search_results");
         resp.put("results", results);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        reply(ctx, resp);
     }
 
-    private void handleGetProductDetail(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        Object pid = request.get("product_id");
+    private void handleGetProductDetail(ChannelHandlerContext ctx, ProductDetailRequest request) throws Exception {
+        Long pid = request.getProductId();
         Map<String, Object> resp = new HashMap<>();
         resp.put("type", "product_detail");
-        Map<String, Object> product = null;
-        if (pid != null) {
-            for (Map<String, Object> p : CATALOG) {
-                if (pid.equals(p.get("product_id"))) { product = p; break; }
-            }
-        }
-        if (product == null && !CATALOG.isEmpty()) product = CATALOG.get(0);
-        resp.put("product", product);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        CatalogProduct product = pid != null ? findProduct(pid) : null;
+        if (product == null) product = CATALOG.first();
+        resp.put("product", product == null ? null : product.toMap());
+        reply(ctx, resp);
+        // 查看详情即订阅该商品的库存变化
+        if (product != null) STOCK_PUSH.subscribe(ctx.channel(), Collections.singletonList(product.getProductId()));
     }
 
-    private void handleAddToCart(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
-        Object pid = request.get("product_id");
-        if (pid == null) pid = request.get("productId");
-        if (pid == null) pid = 1001; // 默认一个
-        int quantity = ((Number)request.getOrDefault("quantity", 1)).intValue();
+    private void handleAddToCart(ChannelHandlerContext ctx, CartItemRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
+        Long pid = request.getProductId();
+        if (pid == null) pid = 1001L; // 默认一个
+        int quantity = request.getQuantity() == null ? 1 : request.getQuantity();
         if (quantity < 1) quantity = 1;
         List<Map<String, Object>> list = carts.computeIfAbsent(username == null ? "__anon__" : username, k -> new CopyOnWriteArrayList<>());
         // 查找商品
-        Map<String, Object> found = null;
-        for (Map<String, Object> p : CATALOG) {
-            if (pid.equals(p.get("product_id"))) { found = p; break; }
-        }
+        CatalogProduct found = findProduct(pid);
         boolean success = false;
         String message = null;
         int code = 0;
         if (found != null) {
-            int stock = ((Number)found.getOrDefault("stock", 0)).intValue();
+            int stock = found.getStock();
             if (stock <= 0) {
                 // 无库存
                 success = false;
@@ -379,7 +948,7 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
             } else {
                 boolean merged = false;
                 for (Map<String, Object> it : list) {
-                    if (pid.equals(it.get("product_id"))) {
+                    if (sameProduct(pid, it.get("product_id"))) {
                         int q = ((Number)it.getOrDefault("quantity", 1)).intValue();
                         int newQ = q + quantity;
                         if (newQ > stock) newQ = stock;
@@ -402,7 +971,7 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
                         message = "库存不足";
                         code = 2002;
                     } else {
-                        Map<String, Object> item = new HashMap<>(found);
+                        Map<String, Object> item = found.toMap();
                         item.put("quantity", addQ);
                         list.add(item);
                         success = true;
@@ -417,8 +986,8 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         resp.put("success", success && found != null);
         if (message != null) resp.put("message", message);
         if (code != 0) resp.put("code", code);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
-        try { saveCarts(); } catch (Exception ignore) {}
+        reply(ctx, resp);
+        if (success) journalCart(username == null ? "__anon__" : username);
     }
 
     private Map<String, Object> mapOf(Object... kv) {
@@ -429,10 +998,10 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         return m;
     }
 
-    private void handleRegister(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String username = (String) request.get("username");
-        String password = (String) request.get("password");
-        String phone = (String) request.getOrDefault("phone", "");
+    private void handleRegister(ChannelHandlerContext ctx, RegisterRequest request) throws Exception {
+        String username = request.getUsername();
+        String password = request.getPassword();
+        String phone = request.getPhone();
 
         Map<String, Object> response = new HashMap<>();
         response.put("type", "register_response");
@@ -441,7 +1010,7 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         if (username == null || username.isEmpty() || password == null || password.isEmpty()) {
             response.put("success", false);
             response.put("message", "用户名和密码不能为空");
-            ctx.writeAndFlush(objectMapper.writeValueAsString(response) + "\n");
+            reply(ctx, response);
             return;
         }
 
@@ -449,13 +1018,13 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         if (username.length() < 3 || username.length() > 32) {
             response.put("success", false);
             response.put("message", "用户名长度需在 3-32 之间");
-            ctx.writeAndFlush(objectMapper.writeValueAsString(response) + "\n");
+            reply(ctx, response);
             return;
         }
         if (password.length() < 6 || password.length() > 64) {
             response.put("success", false);
             response.put("message", "密码长度需在 6-64 之间");
-            ctx.writeAndFlush(objectMapper.writeValueAsString(response) + "\n");
+            reply(ctx, response);
             return;
         }
 
@@ -463,7 +1032,7 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         if (userStore.containsKey(username)) {
             response.put("success", false);
             response.put("message", "用户名已存在");
-            ctx.writeAndFlush(objectMapper.writeValueAsString(response) + "\n");
+            reply(ctx, response);
             return;
         }
 
@@ -472,41 +1041,55 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         // 初始化或更新用户资料
         Map<String,Object> prof = userProfiles.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
         if (phone != null) prof.put("phone", phone);
-        try { saveUsers(); } catch (Exception ignore) {}
-        try { saveProfiles(); } catch (Exception ignore) {}
+        journalUser(username);
+        journalProfile(username);
 
         response.put("success", true);
         response.put("message", "注册成功");
-    ctx.writeAndFlush(objectMapper.writeValueAsString(response) + "\n");
+    reply(ctx, response);
     }
 
-    private void handleClearCart(ChannelHandlerContext ctx, Map<String,Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
+    private void handleClearCart(ChannelHandlerContext ctx, UserRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
         List<Map<String, Object>> list = carts.computeIfAbsent(username == null ? "__anon__" : username, k -> new CopyOnWriteArrayList<>());
         list.clear();
-        try { saveCarts(); } catch (Exception ignore) {}
+        journalCart(username == null ? "__anon__" : username);
         Map<String,Object> resp = new HashMap<>();
         resp.put("type", "clear_cart_response");
         resp.put("success", true);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        reply(ctx, resp);
         // 回发最新购物车
-        handleGetCart(ctx, request);
+        sendCart(ctx, username);
     }
 
-    private void handleGetOrders(ChannelHandlerContext ctx, Map<String,Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
-        List<Map<String,Object>> myOrders = new CopyOnWriteArrayList<>();
-        for (Map<String,Object> o : orders) {
-            if (username != null && username.equals(o.get("username"))) myOrders.add(o);
+    private void handleGetOrders(ChannelHandlerContext ctx, GetOrdersRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
+        // 可选：before 游标（订单ID）、limit 每页条数（缺省返回全部）、status、start_time/end_time（ISO-8601）
+        long before = request.getBefore();
+        int limit = request.getLimit();
+        String status = request.getStatus();
+        Instant from, to;
+        try {
+            from = request.getStartTime() == null ? null : Instant.parse(request.getStartTime());
+            to = request.getEndTime() == null ? null : Instant.parse(request.getEndTime());
+        } catch (DateTimeParseException e) {
+            Map<String,Object> err = new HashMap<>();
+            err.put("type", "error");
+            err.put("code", 1002);
+            err.put("message", "时间格式无效，应为 ISO-8601");
+            reply(ctx, err);
+            return;
         }
+        UserOrderIndex.Page page = ORDER_INDEX.page(username, before, limit, status, from, to);
         Map<String,Object> resp = new HashMap<>();
         resp.put("type", "orders_response");
-        resp.put("orders", myOrders);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        resp.put("orders", page.getOrders());
+        if (page.getNextCursor() > 0) resp.put("next_cursor", page.getNextCursor());
+        reply(ctx, resp);
     }
 
-    private void handleGetAccountInfo(ChannelHandlerContext ctx, Map<String,Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
+    private void handleGetAccountInfo(ChannelHandlerContext ctx, UserRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
         Map<String,Object> prof = (username!=null) ? userProfiles.getOrDefault(username, new HashMap<>()) : new HashMap<>();
         Map<String,Object> resp = new HashMap<>();
         resp.put("type", "account_info");
@@ -517,22 +1100,22 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         } else {
             resp.put("message", "未登录");
         }
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        reply(ctx, resp);
     }
 
-    private void handleUpdateAccountInfo(ChannelHandlerContext ctx, Map<String,Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
+    private void handleUpdateAccountInfo(ChannelHandlerContext ctx, UpdateAccountRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
         Map<String,Object> resp = new HashMap<>();
         resp.put("type", "update_account_response");
         if (username == null) {
             resp.put("success", false);
             resp.put("message", "未登录");
-            ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+            reply(ctx, resp);
             return;
         }
-        String newPhone = (String) request.get("phone");
-        String newPassword = (String) request.get("password");
-        String newUsername = (String) request.get("new_username");
+        String newPhone = request.getPhone();
+        String newPassword = request.getPassword();
+        String newUsername = request.getNewUsername();
         // 更新手机号
         Map<String,Object> prof = userProfiles.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
         if (newPhone != null) prof.put("phone", newPhone);
@@ -545,9 +1128,10 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
             if (userStore.containsKey(newUsername)) {
                 resp.put("success", false);
                 resp.put("message", "新用户名已存在");
-                ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+                reply(ctx, resp);
                 return;
             }
+            if (DB != null) DB.renameUser(username, newUsername);
             // 迁移用户存储
             String pwd = userStore.remove(username);
             if (pwd != null) userStore.put(newUsername, pwd);
@@ -556,40 +1140,49 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
             List<Map<String,Object>> cart = carts.remove(username);
             if (cart != null) carts.put(newUsername, cart);
             // 订单中的 username 字段也迁移（演示用途）
-            for (Map<String,Object> o : orders) if (username.equals(o.get("username"))) o.put("username", newUsername);
+            for (long id : ORDER_INDEX.orderIds(username)) {
+                Map<String,Object> o = ORDERS.get(id);
+                if (o == null) continue;
+                o.put("username", newUsername);
+                ORDERS.replace(id, o);
+                journalOrder(o);
+            }
+            ORDER_INDEX.rename(username, newUsername);
+            RECOMMEND.rename(username, newUsername);
+            journalUser(username);
+            journalProfile(username);
+            journalCart(username);
+            SESSIONS.rename(username, newUsername);
             username = newUsername;
         }
-        try { saveUsers(); } catch (Exception ignore) {}
-        try { saveProfiles(); } catch (Exception ignore) {}
-        try { saveCarts(); } catch (Exception ignore) {}
-        try { saveOrders(); } catch (Exception ignore) {}
+        journalUser(username);
+        journalProfile(username);
+        journalCart(username);
         resp.put("success", true);
         resp.put("message", "账户信息已更新");
         resp.put("username", username);
         resp.put("phone", String.valueOf(userProfiles.getOrDefault(username, new HashMap<>()).getOrDefault("phone", "")));
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        reply(ctx, resp);
     }
     
-    private void handleGetCart(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
+    private void handleGetCart(ChannelHandlerContext ctx, UserRequest request) throws Exception {
+        sendCart(ctx, usernameOf(ctx, request.getUsername()));
+    }
+
+    private void sendCart(ChannelHandlerContext ctx, String username) throws Exception {
         List<Map<String, Object>> list = carts.computeIfAbsent(username == null ? "__anon__" : username, k -> new CopyOnWriteArrayList<>());
         // 基于当前目录库存，构造带实时库存的 items
-        List<Map<String,Object>> itemsWithStock = new CopyOnWriteArrayList<>();
+        List<CartLine> itemsWithStock = new ArrayList<>(list.size());
+        List<Long> productIds = new ArrayList<>(list.size());
         for (Map<String,Object> it : list) {
-            Map<String,Object> m = new HashMap<>(it);
-            Object pid = it.get("product_id");
-            if (pid != null) {
-                for (Map<String,Object> p : CATALOG) if (pid.equals(p.get("product_id"))) {
-                    m.put("stock", p.getOrDefault("stock", 0));
-                    break;
-                }
-            }
-            itemsWithStock.add(m);
+            productIds.add(toProductId(it.get("product_id")));
+            CatalogProduct p = findProduct(it.get("product_id"));
+            int stock = p != null ? p.getStock() : ((Number) it.getOrDefault("stock", 0)).intValue();
+            itemsWithStock.add(new CartLine(toProductId(it.get("product_id")), (String) it.get("name"),
+                    ((Number) it.getOrDefault("price", 0)).doubleValue(), ((Number) it.getOrDefault("quantity", 1)).intValue(),
+                    (String) it.get("description"), (String) it.get("image_url"), stock, Boolean.TRUE.equals(it.get("on_sale"))));
         }
-        Map<String, Object> resp = new HashMap<>();
-        resp.put("type", "cart_items");
-        resp.put("items", itemsWithStock);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        reply(ctx, new CartItemsResponse(itemsWithStock));
         // 兼容文档：再发送一条 cart_response（字段名按文档）
         Map<String,Object> resp2 = new HashMap<>();
         resp2.put("type", "cart_response");
@@ -602,43 +1195,41 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
             m.put("price", it.get("price"));
             m.put("quantity", it.get("quantity"));
             // 附带当前库存
-            int stock = 0;
-            if (pid != null) {
-                for (Map<String,Object> p : CATALOG) if (pid.equals(p.get("product_id"))) { stock = ((Number)p.getOrDefault("stock", 0)).intValue(); break; }
-            }
-            m.put("stock", stock);
+            CatalogProduct p = findProduct(pid);
+            m.put("stock", p == null ? 0 : p.getStock());
             items.add(m);
         }
         resp2.put("items", items);
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp2) + "\n");
+        reply(ctx, resp2);
+        // 购物车中的商品自动订阅库存变化
+        STOCK_PUSH.subscribe(ctx.channel(), productIds);
     }
 
-    private void handleRemoveFromCart(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
-        Object pid = request.get("product_id");
+    private void handleRemoveFromCart(ChannelHandlerContext ctx, CartItemRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
+        Long pid = request.getProductId();
         List<Map<String, Object>> list = carts.computeIfAbsent(username == null ? "__anon__" : username, k -> new CopyOnWriteArrayList<>());
         if (pid != null) {
-            list.removeIf(it -> pid.equals(it.get("product_id")));
+            list.removeIf(it -> sameProduct(pid, it.get("product_id")));
         }
+        journalCart(username == null ? "__anon__" : username);
         // 返回最新购物车
-        try { saveCarts(); } catch (Exception ignore) {}
-        handleGetCart(ctx, request);
+        sendCart(ctx, username);
     }
 
-    private void handleSetCartQuantity(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
-        Object pid = request.get("product_id");
-        if (pid == null) pid = request.get("productId");
-        int quantity = ((Number)request.getOrDefault("quantity", 1)).intValue();
+    private void handleSetCartQuantity(ChannelHandlerContext ctx, CartItemRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
+        Long pid = request.getProductId();
+        int quantity = request.getQuantity() == null ? 1 : request.getQuantity();
         if (quantity < 0) quantity = 0;
         List<Map<String, Object>> list = carts.computeIfAbsent(username == null ? "__anon__" : username, k -> new CopyOnWriteArrayList<>());
         boolean found = false;
         for (Map<String,Object> it : list) {
-            if (pid != null && pid.equals(it.get("product_id"))) {
+            if (pid != null && sameProduct(pid, it.get("product_id"))) {
                 found = true;
                 // 依据当前库存进行夹取
-                int stock = 0;
-                for (Map<String,Object> p : CATALOG) if (pid.equals(p.get("product_id"))) { stock = ((Number)p.getOrDefault("stock", 0)).intValue(); break; }
+                CatalogProduct p = findProduct(pid);
+                int stock = p == null ? 0 : p.getStock();
                 if (stock > 0) quantity = Math.min(quantity, stock); else quantity = 0;
                 if (quantity == 0) {
                     // 等价于删除
@@ -651,139 +1242,147 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
         }
         // 若未找到且数量>0，可选地新增（这里选择：若未找到则按当前目录添加一条）
         if (!found && quantity > 0 && pid != null) {
-            for (Map<String,Object> p : CATALOG) {
-                if (pid.equals(p.get("product_id"))) {
-                    int stock = ((Number)p.getOrDefault("stock", 0)).intValue();
-                    int addQ = Math.min(quantity, stock);
-                    if (addQ > 0) {
-                        Map<String,Object> item = new HashMap<>(p);
-                        item.put("quantity", addQ);
-                        list.add(item);
-                    }
-                    break;
+            CatalogProduct p = findProduct(pid);
+            if (p != null) {
+                int addQ = Math.min(quantity, p.getStock());
+                if (addQ > 0) {
+                    Map<String,Object> item = p.toMap();
+                    item.put("quantity", addQ);
+                    list.add(item);
                 }
             }
         }
-        try { saveCarts(); } catch (Exception ignore) {}
-        handleGetCart(ctx, request);
+        journalCart(username == null ? "__anon__" : username);
+        sendCart(ctx, username);
     }
     
-    private void handleCheckout(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
+    private void handleCheckout(ChannelHandlerContext ctx, UserRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
         List<Map<String, Object>> list = carts.computeIfAbsent(username == null ? "__anon__" : username, k -> new CopyOnWriteArrayList<>());
-        boolean ok = !list.isEmpty();
+        // 同一用户的多个会话可能同时修改购物车：只读取一次，预占、下单与清理都基于这份快照
+        List<Map<String, Object>> snapshot = new ArrayList<>(list);
+        int[] quantities = new int[snapshot.size()];
+        boolean ok = !snapshot.isEmpty();
         long orderId = -1;
-        double totalPrice = 0.0;
+        StockEngine.Reservation reservation = null;
         if (ok) {
-            // 校验库存
-            for (Map<String,Object> it : list) {
-                int pid = ((Number)it.get("product_id")).intValue();
-                int qty = ((Number)it.getOrDefault("quantity",1)).intValue();
-                Map<String,Object> found = null;
-                for (Map<String,Object> p : CATALOG) if (((Number)p.get("product_id")).intValue() == pid) { found = p; break; }
-                if (found == null) { ok = false; break; }
-                int stock = ((Number)found.getOrDefault("stock", 0)).intValue();
-                if (qty > stock) { ok = false; break; }
+            // 一次性预占全部行：任一行商品不存在或库存不足则整体失败，不留下扣减
+            List<StockEngine.Line> lines = new ArrayList<>(snapshot.size());
+            for (int i = 0; i < snapshot.size(); i++) {
+                Map<String,Object> it = snapshot.get(i);
+                quantities[i] = ((Number)it.getOrDefault("quantity",1)).intValue();
+                lines.add(new StockEngine.Line(toProductId(it.get("product_id")), quantities[i]));
             }
+            reservation = STOCK.reserve(lines);
+            ok = reservation != null;
         }
         if (ok) {
-            // 扣减库存并创建订单，随后清空购物车
-            List<Map<String,Object>> items = new CopyOnWriteArrayList<>();
-            for (Map<String,Object> it : list) {
-                int pid = ((Number)it.get("product_id")).intValue();
-                int qty = ((Number)it.getOrDefault("quantity",1)).intValue();
-                Map<String,Object> found = null;
-                for (Map<String,Object> p : CATALOG) if (((Number)p.get("product_id")).intValue() == pid) { found = p; break; }
-                if (found == null) continue;
-                int stock = ((Number)found.getOrDefault("stock", 0)).intValue();
-                found.put("stock", Math.max(0, stock - qty));
-                Map<String,Object> m = new HashMap<>();
-                m.put("productId", pid);
-                m.put("quantity", qty);
-                items.add(m);
-                totalPrice += ((Number)it.get("price")).doubleValue() * qty;
-            }
-            orderId = ORDER_SEQ.getAndIncrement();
+            // 创建订单，随后从购物车移除已下单的条目；创建失败时归还预占的库存
             Map<String,Object> order = new HashMap<>();
-            order.put("orderId", orderId);
-            order.put("username", username);
-            order.put("items", items);
-            order.put("total_price", totalPrice);
-            order.put("status", "CREATED");
-            order.put("order_time", Instant.now().toString());
-            orders.add(order);
-            list.clear();
-            try { saveOrders(); } catch (Exception ignore) {}
+            try {
+                List<Map<String,Object>> items = new CopyOnWriteArrayList<>();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    long productId = toProductId(snapshot.get(i).get("product_id"));
+                    Map<String,Object> m = new HashMap<>();
+                    m.put("productId", productId);
+                    m.put("quantity", quantities[i]);
+                    // 下单时的单价快照（预占成功，商品均在目录中），入库时直接使用，不再按行查询商品
+                    m.put("price", CATALOG.get(productId).getPrice());
+                    items.add(m);
+                }
+                orderId = ORDERS.allocate();
+                order.put("orderId", orderId);
+                order.put("username", username);
+                order.put("items", items);
+                order.put("total_price", reservation.totalPrice());
+                order.put("status", "CREATED");
+                order.put("order_time", Instant.now().toString());
+                persistNewOrder(order);
+                ORDERS.publish(orderId, order);
+            } catch (RuntimeException e) {
+                // 未写入的订单ID作废
+                if (orderId > 0) ORDERS.abandon(orderId);
+                reservation.release();
+                throw e;
+            }
+            ORDER_INDEX.add(username, orderId);
+            recordPurchase(order);
+            // 只移除快照中的条目；期间其他会话新加入的条目保留，被调大的数量保留差额
+            for (int i = 0; i < snapshot.size(); i++) {
+                Map<String,Object> it = snapshot.get(i);
+                int rest = ((Number)it.getOrDefault("quantity",1)).intValue() - quantities[i];
+                if (rest > 0) it.put("quantity", rest);
+                else list.remove(it);
+            }
+            journalCart(username == null ? "__anon__" : username);
         }
         Map<String, Object> resp = new HashMap<>();
         resp.put("type", "checkout_response");
         resp.put("success", ok);
-        resp.put("message", ok ? "结算成功" : (list.isEmpty()? "购物车为空" : "库存不足"));
-        if (!ok && !list.isEmpty()) { resp.put("code", 2002); }
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        resp.put("message", ok ? "结算成功" : (snapshot.isEmpty()? "购物车为空" : "库存不足"));
+        if (!ok && !snapshot.isEmpty()) { resp.put("code", 2002); }
+        reply(ctx, resp);
         // 兼容文档：发送 order_response
         Map<String,Object> resp2 = new HashMap<>();
         resp2.put("type", "order_response");
         resp2.put("success", ok);
         if (ok) resp2.put("orderId", orderId);
-        resp2.put("message", ok ? "订单创建成功" : (list.isEmpty()? "购物车为空" : "库存不足"));
-        if (!ok) { resp2.put("code", list.isEmpty()? 3001 : 2002); }
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp2) + "\n");
-        try { saveCarts(); } catch (Exception ignore) {}
-    }
-
-    private void handleCreateOrder(ChannelHandlerContext ctx, Map<String, Object> request) throws Exception {
-        String username = (String) request.getOrDefault("username", findUsernameByCtx(ctx));
-        Object rawItems = request.get("items");
-        List<Map<String,Object>> reqItems = new CopyOnWriteArrayList<>();
-        if (rawItems instanceof List<?>) {
-            for (Object o : (List<?>) rawItems) {
-                if (o instanceof Map<?,?>) {
-                    @SuppressWarnings("unchecked")
-                    Map<String,Object> m = new HashMap<>((Map<String,Object>) o);
-                    reqItems.add(m);
-                }
+        resp2.put("message", ok ? "订单创建成功" : (snapshot.isEmpty()? "购物车为空" : "库存不足"));
+        if (!ok) { resp2.put("code", snapshot.isEmpty()? 3001 : 2002); }
+        reply(ctx, resp2);
+    }
+
+    private void handleCreateOrder(ChannelHandlerContext ctx, CreateOrderRequest request) throws Exception {
+        String username = usernameOf(ctx, request.getUsername());
+        List<Map<String,Object>> reqItems = new ArrayList<>();
+        if (request.getItems() != null) {
+            for (CreateOrderRequest.Line line : request.getItems()) {
+                if (line == null) continue;
+                Map<String,Object> m = new HashMap<>();
+                m.put("productId", line.getProductId());
+                m.put("quantity", line.getQuantity());
+                reqItems.add(m);
             }
         }
         boolean ok = !reqItems.isEmpty();
         long orderId = -1; double total = 0.0;
+        StockEngine.Reservation reservation = null;
         if (ok) {
-            // 校验并预检查库存
+            // 原子预占全部行（商品不存在、数量非法或库存不足则整体失败）
+            List<StockEngine.Line> lines = new ArrayList<>(reqItems.size());
             for (Map<String,Object> it : reqItems) {
-                Object pid = it.get("productId");
                 int qty = ((Number)it.getOrDefault("quantity", 1)).intValue();
-                Map<String,Object> found = null;
-                for (Map<String,Object> p : CATALOG) if (pid != null && pid.equals(p.get("product_id"))) { found = p; break; }
-                if (found == null || qty < 1) { ok = false; break; }
-                int stock = ((Number)found.getOrDefault("stock", 0)).intValue();
-                if (qty > stock) { ok = false; break; }
-                total += ((Number)found.get("price")).doubleValue() * qty;
+                lines.add(new StockEngine.Line(toProductId(it.get("productId")), qty));
             }
+            reservation = STOCK.reserve(lines);
+            ok = reservation != null;
         }
         Map<String,Object> resp = new HashMap<>();
         resp.put("type", "order_response");
         resp.put("success", ok);
         if (ok) {
-            orderId = ORDER_SEQ.getAndIncrement();
             Map<String,Object> order = new HashMap<>();
-            order.put("orderId", orderId);
-            order.put("username", username);
-            order.put("items", reqItems);
-            order.put("total_price", total);
-            order.put("status", "CREATED");
-            order.put("order_time", Instant.now().toString());
-            orders.add(order);
-            try { saveOrders(); } catch (Exception ignore) {}
-            // 扣减库存
-            for (Map<String,Object> it : reqItems) {
-                Object pid = it.get("productId");
-                int qty = ((Number)it.getOrDefault("quantity", 1)).intValue();
-                for (Map<String,Object> p : CATALOG) if (pid != null && pid.equals(p.get("product_id"))) {
-                    int stock = ((Number)p.getOrDefault("stock", 0)).intValue();
-                    p.put("stock", Math.max(0, stock - qty));
-                    break;
-                }
+            try {
+                total = reservation.totalPrice();
+                // 下单时的单价快照（预占成功，商品均在目录中）
+                for (Map<String,Object> it : reqItems) it.put("price", CATALOG.get(toProductId(it.get("productId"))).getPrice());
+                orderId = ORDERS.allocate();
+                order.put("orderId", orderId);
+                order.put("username", username);
+                order.put("items", reqItems);
+                order.put("total_price", total);
+                order.put("status", "CREATED");
+                order.put("order_time", Instant.now().toString());
+                persistNewOrder(order);
+                ORDERS.publish(orderId, order);
+            } catch (RuntimeException e) {
+                // 订单创建失败：未写入的订单ID作废，归还预占的库存
+                if (orderId > 0) ORDERS.abandon(orderId);
+                reservation.release();
+                throw e;
             }
+            ORDER_INDEX.add(username, orderId);
+            recordPurchase(order);
             resp.put("orderId", orderId);
             resp.put("message", "订单创建成功");
         } else {
@@ -792,32 +1391,46 @@ public class SocketMessageHandler extends SimpleChannelInboundHandler<String> {
             resp.put("code", empty ? 3002 : 2002);
             resp.put("message", empty ? "订单创建失败" : "库存不足");
         }
-        ctx.writeAndFlush(objectMapper.writeValueAsString(resp) + "\n");
+        reply(ctx, resp);
     }
 
-    private String findUsernameByCtx(ChannelHandlerContext ctx) {
-        for (Map.Entry<String, ChannelHandlerContext> e : clientChannels.entrySet()) {
-            if (e.getValue() == ctx) return e.getKey();
-        }
-        return null;
+    private void handleSubscribeStock(ChannelHandlerContext ctx, StockSubscriptionRequest request) throws Exception {
+        List<Long> ids = request.getProductIds() == null ? Collections.emptyList() : request.getProductIds();
+        replySubscriptions(ctx, "subscribe_stock_response", STOCK_PUSH.subscribe(ctx.channel(), ids));
+    }
+
+    private void handleUnsubscribeStock(ChannelHandlerContext ctx, StockSubscriptionRequest request) throws Exception {
+        replySubscriptions(ctx, "unsubscribe_stock_response", STOCK_PUSH.unsubscribe(ctx.channel(), request.getProductIds()));
+    }
+
+    private void replySubscriptions(ChannelHandlerContext ctx, String type, List<Long> subscribed) throws Exception {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("type", type);
+        resp.put("success", true);
+        resp.put("product_ids", subscribed);
+        reply(ctx, resp);
+    }
+
+    // 请求未携带用户名时使用连接上已登录的用户
+    private String usernameOf(ChannelHandlerContext ctx, String requested) {
+        return requested != null ? requested : SESSIONS.username(ctx.channel());
     }
     
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
-        System.out.println("Client connected: " + ctx.channel().remoteAddress());
+        LOG.debug("client connected remote={}", ctx.channel().remoteAddress());
     }
     
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
-        System.out.println("Client disconnected: " + ctx.channel().remoteAddress());
+        LOG.debug("client disconnected remote={}", ctx.channel().remoteAddress());
         // 清理连接对应的用户映射
-        clientChannels.entrySet().removeIf(e -> e.getValue() == ctx);
-        recentByCtx.remove(ctx);
+        SESSIONS.unbind(ctx.channel());
     }
     
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        cause.printStackTrace();
+        LOG.warn("closing connection remote={}", ctx.channel().remoteAddress(), cause);
         ctx.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+package com.shopping.server.socket;
+
+import com.shopping.server.socket.codec.MessageTypes;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * socket 请求指标：按消息类型统计请求数、错误码、处理延迟分位数、收发字节数，以及 I/O / 业务线程的排队任务数。
+ * 热路径只有 LongAdder 累加和 HdrHistogram Recorder 记录（固定大小的直方图，记录时不分配内存）。
+ * 分位数按统计窗口滚动：抓取时若当前窗口已满 windowMs，则换出该窗口的直方图，之后读取的都是最近一个完整窗口。
+ * 某个类型/错误码第一次出现时才注册对应指标，未使用的类型不产生时间序列。
+ */
+final class SocketMetrics implements MeterBinder {
+    // 请求类型编号 1~99（见 MessageTypes），0 归入 unknown（无法解析、未登记的类型、业务队列满时拒绝的请求）
+    private static final int MAX_REQUEST_TYPE = 99;
+    // 延迟以微秒记录，超过 60 秒按 60 秒计
+    private static final long MAX_LATENCY_US = TimeUnit.SECONDS.toMicros(60);
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final AtomicReferenceArray<TypeStats> byType = new AtomicReferenceArray<>(MAX_REQUEST_TYPE + 1);
+    private final Map<String, EventExecutorGroup> executors = new LinkedHashMap<>();
+    private volatile MeterRegistry registry;
+    private volatile long windowMs = 60000;
+    private volatile int logSampleRate = 100;
+
+    /**
+     * @param windowMs 延迟分位数的统计窗口（毫秒）
+     * @param logSampleRate 每多少个请求抽样记录一条请求日志，<= 0 表示不记录
+     */
+    void configure(long windowMs, int logSampleRate) {
+        this.windowMs = Math.max(1000, windowMs);
+        this.logSampleRate = logSampleRate;
+    }
+
+    /** @return 本次请求是否需要记录请求日志（按 logSampleRate 随机抽样） */
+    boolean sampled() {
+        int rate = logSampleRate;
+        return rate > 0 && (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0);
+    }
+
+    /**
+     * 登记需要上报排队任务数的线程组（在 bindTo 之前调用）
+     * @param group 指标标签，如 io / business
+     */
+    synchronized void monitor(String group, EventExecutorGroup executors) {
+        if (executors != null) this.executors.put(group, executors);
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        for (Map.Entry<String, EventExecutorGroup> e : executors.entrySet()) {
+            Gauge.builder("socket.executor.pending", e.getValue(), SocketMetrics::pendingTasks)
+                    .description("Tasks queued on the socket event loops / business executors")
+                    .tag("group", e.getKey())
+                    .register(registry);
+        }
+        for (int i = 0; i < byType.length(); i++) {
+            TypeStats s = byType.get(i);
+            if (s != null) s.register(registry);
+        }
+    }
+
+    /**
+     * @param type 请求的消息类型，null 或未登记的类型归入 unknown
+     * @return 该类型的统计
+     */
+    TypeStats stats(String type) {
+        int id = MessageTypes.idOf(type);
+        return slot(id >= 1 && id <= MAX_REQUEST_TYPE ? id : 0);
+    }
+
+    /** @return 无法识别类型的请求的统计 */
+    TypeStats unknown() {
+        return slot(0);
+    }
+
+    private TypeStats slot(int id) {
+        TypeStats s = byType.get(id);
+        if (s != null) return s;
+        TypeStats created = new TypeStats(id == 0 ? "unknown" : MessageTypes.nameOf(id));
+        if (!byType.compareAndSet(id, null, created)) return byType.get(id);
+        MeterRegistry r = registry;
+        if (r != null) created.register(r);
+        return created;
+    }
+
+    // 事件循环 / 业务线程的队列长度之和
+    private static double pendingTasks(EventExecutorGroup group) {
+        long pending = 0;
+        for (EventExecutor e : group) {
+            if (e instanceof SingleThreadEventExecutor) pending += ((SingleThreadEventExecutor) e).pendingTasks();
+        }
+        return pending;
+    }
+
+    /** 一种消息类型的计数与延迟直方图 */
+    final class TypeStats {
+        private final String type;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+        private final Recorder latency = new Recorder(MAX_LATENCY_US, 2);
+        // 以下字段由 this 保护：最近一个完整窗口的直方图，以及换出时复用的另一个
+        private Histogram window;
+        private Histogram spare;
+        private long windowStart = System.currentTimeMillis();
+
+        TypeStats(String type) {
+            this.type = type;
+        }
+
+        String type() {
+            return type;
+        }
+
+        /**
+         * 记录一次请求
+         * @param nanos 从收到请求到响应写出的耗时（含业务队列等待）
+         * @param requestBytes 请求字节数
+         */
+        void record(long nanos, int requestBytes) {
+            requests.increment();
+            bytesIn.add(requestBytes);
+            latency.recordValue(Math.min(MAX_LATENCY_US, Math.max(0, nanos / 1000)));
+        }
+
+        void sent(int bytes) {
+            bytesOut.add(bytes);
+        }
+
+        void error(int code) {
+            LongAdder counter = errors.get(code);
+            if (counter == null) {
+                LongAdder created = new LongAdder();
+                counter = errors.putIfAbsent(code, created);
+                if (counter == null) {
+                    counter = created;
+                    MeterRegistry r = registry;
+                    if (r != null) registerError(r, code, created);
+                }
+            }
+            counter.increment();
+        }
+
+        void register(MeterRegistry r) {
+            FunctionCounter.builder("socket.requests", requests, LongAdder::sum)
+                    .description("Socket requests handled").tag("type", type).register(r);
+            FunctionCounter.builder("socket.bytes.received", bytesIn, LongAdder::sum)
+                    .baseUnit("bytes").tag("type", type).register(r);
+            FunctionCounter.builder("socket.bytes.sent", bytesOut, LongAdder::sum)
+                    .baseUnit("bytes").tag("type", type).register(r);
+            for (double q : QUANTILES) {
+                double percentile = q * 100;
+                Gauge.builder("socket.request.latency", this, s -> s.latencySeconds(percentile))
+                        .description("Request latency percentile over the last window")
+                        .baseUnit("seconds").tag("type", type).tag("quantile", String.valueOf(q)).register(r);
+            }
+            Gauge.builder("socket.request.latency.max", this, s -> s.latencySeconds(100))
+                    .baseUnit("seconds").tag("type", type).register(r);
+            errors.forEach((code, counter) -> registerError(r, code, counter));
+        }
+
+        private void registerError(MeterRegistry r, int code, LongAdder counter) {
+            FunctionCounter.builder("socket.errors", counter, LongAdder::sum)
+                    .description("Error responses by code").tag("type", type).tag("code", String.valueOf(code)).register(r);
+        }
+
+        private synchronized double latencySeconds(double percentile) {
+            long now = System.currentTimeMillis();
+            if (window == null || now - windowStart >= windowMs) {
+                // 换出当前窗口；上一窗口的直方图留作下次换出时复用
+                Histogram done = latency.getIntervalHistogram(spare);
+                spare = window;
+                window = done;
+                windowStart = now;
+            }
+            return window.getTotalCount() == 0 ? 0 : window.getValueAtPercentile(percentile) / 1e6;
+        }
+    }
+}
@@ -1,70 +1,178 @@
 package com.shopping.server.socket;
 
+import com.shopping.server.config.SocketProperties;
+import com.shopping.server.persist.ShopStore;
+import com.shopping.server.session.IdleSessionHandler;
+import com.shopping.server.socket.codec.ProtocolDetector;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.json.JsonObjectDecoder;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
-import java.nio.charset.StandardCharsets;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.RejectedExecutionHandlers;
+import io.netty.util.NettyRuntime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 @Component
 public class SocketServer {
-    private final int port;
+    private static final Logger LOG = LoggerFactory.getLogger(SocketServer.class);
+
+    private final SocketProperties properties;
+    // 仅在 jpa profile 下存在
+    private final ShopStore store;
+    // actuator 的指标注册表（/actuator/prometheus）
+    private final MeterRegistry meterRegistry;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    private EventExecutorGroup businessGroup;
     
-    public SocketServer() {
-        this.port = 8080;
+    public SocketServer(SocketProperties properties, ObjectProvider<ShopStore> store, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.properties = properties;
+        this.store = store.getIfAvailable();
+        this.meterRegistry = meterRegistry.getIfAvailable();
     }
     
     @PostConstruct
     public void start() throws Exception {
-        bossGroup = new NioEventLoopGroup();
-        workerGroup = new NioEventLoopGroup();
+        SocketProperties.Transport transport = properties.getTransport();
+        boolean epoll = transport.isNativeTransport() && Epoll.isAvailable();
+        // SO_REUSEPORT 时每个监听 socket 注册到一个 accept 线程上
+        int acceptors = transport.isReusePort() && epoll
+                ? (transport.getAcceptors() > 0 ? transport.getAcceptors() : Math.max(1, transport.getBossThreads())) : 1;
+        if (transport.isReusePort() && !epoll) {
+            LOG.warn("socket.transport.reuse-port requires the epoll transport, binding a single acceptor");
+        }
+        bossGroup = newEventLoopGroup(epoll, Math.max(acceptors, transport.getBossThreads()), "socket-boss");
+        workerGroup = newEventLoopGroup(epoll, transport.getWorkerThreads(), "socket-io");
+        businessGroup = createBusinessGroup(properties.getBusiness());
+        SocketProperties.Journal journal = properties.getJournal();
+        SocketMessageHandler.journal().configure(journal.getFsyncIntervalMs(), journal.getFsyncBatch(), journal.getSnapshotIntervalMs());
+        // 加载数据：有数据库存储时读写数据库，否则使用 server-data 下的文件
+        SocketMessageHandler.startPersistence(store);
+        if (properties.getOrders().isSpillSealedSegments()) SocketMessageHandler.spillSealedOrderSegments();
+        SocketProperties.Recommendations rec = properties.getRecommendations();
+        SocketMessageHandler.recommendations().configure(rec.getRebuildIntervalMs(), rec.getNeighbors());
+        SocketProperties.StockPush push = properties.getStockPush();
+        SocketMessageHandler.stockPush().configure(push.getMinIntervalMs(), push.getMaxSubscriptions());
+        SocketProperties.Metrics metrics = properties.getMetrics();
+        SocketMetrics socketMetrics = SocketMessageHandler.metrics();
+        socketMetrics.configure(TimeUnit.SECONDS.toMillis(metrics.getWindowSeconds()), metrics.getLogSampleRate());
+        socketMetrics.monitor("io", workerGroup);
+        socketMetrics.monitor("business", businessGroup);
+        if (meterRegistry != null) socketMetrics.bindTo(meterRegistry);
+        // 处理器无连接状态（@Sharable），所有连接共用一个实例
+        SocketMessageHandler handler = new SocketMessageHandler(businessGroup);
+        IdleSessionHandler idleHandler = new IdleSessionHandler();
+        int idleTimeout = properties.getSession().getIdleTimeoutSeconds();
         
         try {
             ServerBootstrap b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) {
-                        ch.pipeline().addLast(
-                            new JsonObjectDecoder(),
-                            new StringDecoder(StandardCharsets.UTF_8),
-                            new StringEncoder(StandardCharsets.UTF_8),
-                            new SocketMessageHandler()
-                        );
+                        if (idleTimeout > 0) {
+                            // 空闲连接淘汰：关闭后由处理器在 channelInactive 中解绑会话
+                            ch.pipeline().addLast(new IdleStateHandler(0, 0, idleTimeout, TimeUnit.SECONDS), idleHandler);
+                        }
+                        // 合并 flush：读循环内的多次 flush 合并到 channelReadComplete，业务线程的 flush 也按事件循环合并
+                        ch.pipeline().addLast("flushConsolidation", new FlushConsolidationHandler(256, true));
+                        // 按首个字节识别 JSON / 二进制协议，识别后在其后插入对应的编解码器
+                        ch.pipeline().addLast("protocolDetector", new ProtocolDetector());
+                        ch.pipeline().addLast("handler", handler);
                     }
                 })
-                .option(ChannelOption.SO_BACKLOG, 128)
-                .childOption(ChannelOption.SO_KEEPALIVE, true);
+                .option(ChannelOption.SO_BACKLOG, transport.getBacklog())
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.TCP_NODELAY, transport.isTcpNoDelay())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        transport.getWriteBufferLowWaterMark(),
+                        Math.max(transport.getWriteBufferLowWaterMark(), transport.getWriteBufferHighWaterMark())))
+                .childOption(ChannelOption.ALLOCATOR, newAllocator(transport.getAllocator()));
+            if (acceptors > 1) b.option(EpollChannelOption.SO_REUSEPORT, true);
             
-            ChannelFuture f = b.bind(port).sync();
-            System.out.println("Socket server started on port " + port);
+            // 每次 bind 创建一个监听 socket，轮流注册到 boss 线程上
+            int port = transport.getPort();
+            for (int i = 0; i < acceptors; i++) {
+                b.bind(port).sync();
+            }
+            LOG.info("Socket server started on port {} ({}, acceptors={})", port, epoll ? "epoll" : "nio", acceptors);
         } catch (Exception e) {
-            e.printStackTrace();
+            // 端口被占用等：不在没有 socket 服务的情况下继续运行
+            LOG.error("Socket server failed to start", e);
             shutdown();
+            throw e;
         }
     }
     
+    private static EventLoopGroup newEventLoopGroup(boolean epoll, int threads, String name) {
+        // threads <= 0 时 Netty 取 CPU 核数 * 2
+        int n = Math.max(0, threads);
+        DefaultThreadFactory factory = new DefaultThreadFactory(name);
+        return epoll ? new EpollEventLoopGroup(n, factory) : new NioEventLoopGroup(n, factory);
+    }
+    
+    private static PooledByteBufAllocator newAllocator(SocketProperties.Allocator cfg) {
+        int pageSize = cfg.getPageSize() > 0 ? cfg.getPageSize() : PooledByteBufAllocator.defaultPageSize();
+        int maxOrder = cfg.getMaxOrder() > 0 ? cfg.getMaxOrder() : PooledByteBufAllocator.defaultMaxOrder();
+        int directArenas = cfg.getDirectArenas() > 0 ? cfg.getDirectArenas() : PooledByteBufAllocator.defaultNumDirectArena();
+        int heapArenas = cfg.getHeapArenas() > 0 ? cfg.getHeapArenas() : PooledByteBufAllocator.defaultNumHeapArena();
+        return new PooledByteBufAllocator(cfg.isPreferDirect(), heapArenas, directArenas, pageSize, maxOrder,
+                PooledByteBufAllocator.defaultSmallCacheSize(), PooledByteBufAllocator.defaultNormalCacheSize(),
+                cfg.isUseCacheForAllThreads());
+    }
+    
+    private static EventExecutorGroup createBusinessGroup(SocketProperties.Business cfg) {
+        if (!cfg.isEnabled()) return null;
+        int threads = cfg.getThreads() > 0 ? cfg.getThreads() : NettyRuntime.availableProcessors() * 2;
+        // 有界队列 + 拒绝策略：过载时由处理器返回 1003，而不是无限排队放大延迟
+        return new DefaultEventExecutorGroup(threads, new DefaultThreadFactory("socket-business"),
+                Math.max(16, cfg.getMaxPendingTasks()), RejectedExecutionHandlers.reject());
+    }
+    
     @PreDestroy
     public void shutdown() {
+        List<Future<?>> terminations = new ArrayList<>(3);
         if (bossGroup != null) {
-            bossGroup.shutdownGracefully();
+            terminations.add(bossGroup.shutdownGracefully());
         }
         if (workerGroup != null) {
-            workerGroup.shutdownGracefully();
+            terminations.add(workerGroup.shutdownGracefully());
+        }
+        if (businessGroup != null) {
+            terminations.add(businessGroup.shutdownGracefully());
+        }
+        // shutdownGracefully 不阻塞：等业务线程执行完剩余请求（它们仍会写变更日志）后再关闭日志
+        for (Future<?> f : terminations) {
+            f.syncUninterruptibly();
         }
+        SocketMessageHandler.recommendations().stop();
+        // 写完剩余的变更日志并做最后一次快照
+        SocketMessageHandler.journal().close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.shopping.server.socket;
+
+import com.shopping.server.socket.codec.ProtocolDetector;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongToIntFunction;
+
+/**
+ * 库存变化推送（发布/订阅）：连接订阅关心的商品（购物车中的、正在查看详情的），
+ * 下单改变库存时只登记"哪些商品变了"，由连接所在的 I/O 线程合并后推送一条 stock_update。
+ * 同一连接两次推送之间至少间隔 minIntervalMs，期间的多次变化合并为一次，推送时读取当时的最新库存；
+ * 连接不可写（客户端读得慢）时推迟推送，待推送集合最多为该连接的订阅数，不会无限堆积。
+ */
+final class StockSubscriptions {
+    private static final Logger LOG = LoggerFactory.getLogger(StockSubscriptions.class);
+
+    private static final AttributeKey<Subscriber> SUBSCRIBER = AttributeKey.valueOf("socket.stockSubscriber");
+
+    // 商品 -> 订阅该商品的连接
+    private final Map<Long, Set<Subscriber>> byProduct = new ConcurrentHashMap<>();
+    // 商品ID -> 当前库存，商品不存在时返回 -1
+    private final LongToIntFunction stockOf;
+    private volatile long minIntervalMs = 200;
+    private volatile int maxPerChannel = 256;
+
+    StockSubscriptions(LongToIntFunction stockOf) {
+        this.stockOf = stockOf;
+    }
+
+    /**
+     * 调整推送策略，可在运行中调用
+     * @param minIntervalMs 同一连接两次推送的最小间隔（毫秒）
+     * @param maxPerChannel 每个连接最多订阅的商品数，超出部分忽略
+     */
+    void configure(long minIntervalMs, int maxPerChannel) {
+        this.minIntervalMs = Math.max(0, minIntervalMs);
+        this.maxPerChannel = Math.max(1, maxPerChannel);
+    }
+
+    /**
+     * 订阅商品库存变化（已订阅的忽略）
+     * @return 连接当前订阅的全部商品
+     */
+    List<Long> subscribe(Channel channel, Iterable<Long> productIds) {
+        Subscriber sub = subscriber(channel);
+        List<Long> current;
+        // 同一连接的订阅/退订互斥（batch 并行子请求可能同时自动订阅），上限检查与加入是原子的
+        synchronized (sub.products) {
+            for (Long id : productIds) {
+                if (id == null || id <= 0 || sub.products.size() >= maxPerChannel) continue;
+                if (sub.products.add(id)) byProduct.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(sub);
+            }
+            current = new ArrayList<>(sub.products);
+        }
+        // 与关闭监听的退订竞争：连接已关闭时由这里撤销，避免已关闭的订阅者留在 byProduct 中
+        if (!channel.isActive()) return unsubscribe(channel, null);
+        return current;
+    }
+
+    /**
+     * 取消订阅
+     * @param productIds 要取消的商品，null 表示全部
+     * @return 连接仍订阅的商品
+     */
+    List<Long> unsubscribe(Channel channel, Iterable<Long> productIds) {
+        Subscriber sub = channel.attr(SUBSCRIBER).get();
+        if (sub == null) return new ArrayList<>();
+        synchronized (sub.products) {
+            for (Long id : productIds == null ? new ArrayList<>(sub.products) : productIds) {
+                if (id != null && sub.products.remove(id)) remove(id, sub);
+            }
+            return new ArrayList<>(sub.products);
+        }
+    }
+
+    /**
+     * 商品库存已变化：登记到每个订阅连接的待推送集合（不阻塞，不读库存）
+     * @param productId 商品ID
+     */
+    void publish(long productId) {
+        Set<Subscriber> subs = byProduct.get(productId);
+        if (subs == null) return;
+        for (Subscriber sub : subs) sub.changed(productId);
+    }
+
+    private Subscriber subscriber(Channel channel) {
+        Subscriber sub = channel.attr(SUBSCRIBER).get();
+        if (sub != null) return sub;
+        Subscriber fresh = new Subscriber(channel);
+        sub = channel.attr(SUBSCRIBER).setIfAbsent(fresh);
+        if (sub != null) return sub;
+        // 连接关闭时撤销全部订阅
+        channel.closeFuture().addListener(f -> unsubscribe(channel, null));
+        return fresh;
+    }
+
+    private void remove(long productId, Subscriber sub) {
+        byProduct.computeIfPresent(productId, (k, set) -> {
+            set.remove(sub);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /** 一个连接的订阅与待推送状态 */
+    private final class Subscriber {
+        final Channel channel;
+        final Set<Long> products = ConcurrentHashMap.newKeySet();
+        // 以下字段由 this 保护
+        private Set<Long> pending = new LinkedHashSet<>();
+        private boolean scheduled;
+        private long lastPush;
+
+        Subscriber(Channel channel) {
+            this.channel = channel;
+        }
+
+        void changed(long productId) {
+            long delay;
+            synchronized (this) {
+                pending.add(productId);
+                if (scheduled) return;
+                scheduled = true;
+                delay = Math.max(0, lastPush + minIntervalMs - System.currentTimeMillis());
+            }
+            schedule(delay);
+        }
+
+        private void schedule(long delayMs) {
+            try {
+                channel.eventLoop().schedule(this::push, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // 事件循环已关闭（连接/服务关闭中），丢弃
+                synchronized (this) {
+                    scheduled = false;
+                    pending.clear();
+                }
+            }
+        }
+
+        // 在连接的 I/O 线程上执行
+        private void push() {
+            if (!channel.isActive()) return;
+            if (!channel.isWritable()) {
+                // 出站缓冲区积压：推迟，期间的变化继续合并
+                schedule(Math.max(minIntervalMs, 10));
+                return;
+            }
+            Set<Long> ids;
+            synchronized (this) {
+                ids = pending;
+                pending = new LinkedHashSet<>();
+                scheduled = false;
+                lastPush = System.currentTimeMillis();
+            }
+            List<Map<String, Object>> items = new ArrayList<>(ids.size());
+            for (long id : ids) {
+                int stock = stockOf.applyAsInt(id);
+                if (stock < 0) continue;
+                Map<String, Object> m = new HashMap<>();
+                m.put("product_id", id);
+                m.put("stock", stock);
+                items.add(m);
+            }
+            if (items.isEmpty()) return;
+            Map<String, Object> msg = new HashMap<>();
+            msg.put("type", "stock_update");
+            msg.put("items", items);
+            try {
+                if (Boolean.TRUE.equals(channel.attr(ProtocolDetector.BINARY).get())) {
+                    channel.writeAndFlush(msg);
+                } else {
+                    channel.writeAndFlush(ResponseWriter.jsonLine(channel.alloc(), msg));
+                }
+            } catch (Exception e) {
+                LOG.warn("Push stock_update failed remote={}", channel.remoteAddress(), e);
+            }
+        }
+    }
+}
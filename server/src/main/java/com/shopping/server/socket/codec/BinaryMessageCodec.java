@@ -0,0 +1,104 @@
+package com.shopping.server.socket.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.util.AttributeKey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制协议编解码（位于 LengthFieldBasedFrameDecoder 之后）：
+ * 帧 = 长度(uint32，不含自身) + 类型编号(uint16) + CBOR 编码的消息体（不含 type 字段）。
+ * 入站帧解码为带 type 字段的 Map，与 JSON 请求解析结果一致；出站的 Map 或响应对象按同样格式编码。
+ */
+public class BinaryMessageCodec extends MessageToMessageCodec<ByteBuf, Object> {
+    private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
+    /** 刚解码的入站帧的字节数（含长度前缀），供处理器在同一次 channelRead 中统计流量 */
+    public static final AttributeKey<Integer> FRAME_BYTES = AttributeKey.valueOf("protocol.frameBytes");
+    /** 刚解码的入站帧（类型编号 + 消息体）的 FNV-1a 64 位哈希，在解码前按原始字节计算，供重复请求过滤使用 */
+    public static final AttributeKey<Long> FRAME_HASH = AttributeKey.valueOf("protocol.frameHash");
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) throws Exception {
+        // 已编码的字节直接放行
+        return !(msg instanceof ByteBuf);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object resp, List<Object> out) throws Exception {
+        out.add(encodeFrame(ctx.alloc(), resp));
+    }
+
+    /**
+     * 把响应编码成完整的帧（含长度前缀）
+     * @param alloc 分配器
+     * @param resp 响应（Map 或 DTO）
+     * @return 帧，由调用方写出或释放
+     */
+    @SuppressWarnings("unchecked")
+    public static ByteBuf encodeFrame(ByteBufAllocator alloc, Object resp) throws IOException {
+        Map<String, Object> msg = resp instanceof Map ? (Map<String, Object>) resp : CBOR.convertValue(resp, MAP_TYPE);
+        Object type = msg.get("type");
+        int typeId = MessageTypes.idOf(type == null ? null : type.toString());
+        ByteBuf buf = alloc.buffer();
+        try {
+            buf.writeInt(0).writeShort(typeId);
+            OutputStream os = new ByteBufOutputStream(buf);
+            try (JsonGenerator gen = CBOR.getFactory().createGenerator(os)) {
+                gen.writeStartObject();
+                for (Map.Entry<String, Object> e : msg.entrySet()) {
+                    if (typeId != MessageTypes.UNREGISTERED && "type".equals(e.getKey())) continue;
+                    gen.writeFieldName(e.getKey());
+                    gen.writeObject(e.getValue());
+                }
+                gen.writeEndObject();
+            }
+            buf.setInt(0, buf.readableBytes() - 4);
+            return buf;
+        } catch (IOException | RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf frame, List<Object> out) throws Exception {
+        if (frame.readableBytes() < 2) throw new CorruptedFrameException("frame too short");
+        ctx.channel().attr(FRAME_BYTES).set(frame.readableBytes() + 4);
+        ctx.channel().attr(FRAME_HASH).set(hash(frame));
+        int typeId = frame.readUnsignedShort();
+        // ByteBufInputStream/ByteBufOutputStream 同时实现了 DataInput/DataOutput，需显式按流类型传入
+        InputStream in = new ByteBufInputStream(frame);
+        Map<String, Object> body = frame.isReadable() ? CBOR.readValue(in, MAP_TYPE) : new HashMap<>();
+        if (typeId != MessageTypes.UNREGISTERED) {
+            String name = MessageTypes.nameOf(typeId);
+            // 未知编号保留为字符串，交由业务层按未知类型处理
+            body.put("type", name != null ? name : "#" + typeId);
+        }
+        out.add(body);
+    }
+
+    private static long hash(ByteBuf frame) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = frame.readerIndex(), end = frame.writerIndex(); i < end; i++) {
+            h ^= frame.getByte(i) & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,89 @@
+package com.shopping.server.socket.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 二进制协议中的消息类型编号（替代 JSON 中的字符串 type 字段）。
+ * 编号一经发布不可修改，只能追加；0 保留给未登记的类型（此时消息体中携带 type 字段）。
+ */
+public final class MessageTypes {
+    public static final int UNREGISTERED = 0;
+
+    private static final Map<String, Integer> IDS = new HashMap<>();
+    private static final Map<Integer, String> NAMES = new HashMap<>();
+
+    static {
+        // 请求：1 ~ 99
+        register(1, "login");
+        register(2, "register");
+        register(3, "get_products");
+        register(4, "search_products");
+        register(5, "get_cart");
+        register(6, "remove_from_cart");
+        register(7, "set_cart_quantity");
+        register(8, "checkout");
+        register(9, "create_order");
+        register(10, "get_orders");
+        register(11, "get_carousel");
+        register(12, "get_recommendations");
+        register(13, "get_promotions");
+        register(14, "search");
+        register(15, "get_product_detail");
+        register(16, "add_to_cart");
+        register(17, "clear_cart");
+        register(18, "get_account_info");
+        register(19, "update_account_info");
+        register(20, "batch");
+        register(21, "subscribe_stock");
+        register(22, "unsubscribe_stock");
+        // 响应：100 ~
+        register(100, "error");
+        register(101, "login_response");
+        register(102, "register_response");
+        register(103, "products_response");
+        register(104, "search_results");
+        register(105, "cart_items");
+        register(106, "cart_response");
+        register(107, "checkout_response");
+        register(108, "order_response");
+        register(109, "orders_response");
+        register(110, "carousel_data");
+        register(111, "recommendations");
+        register(112, "promotions");
+        register(113, "product_detail");
+        register(114, "add_to_cart_response");
+        register(115, "clear_cart_response");
+        register(116, "account_info");
+        register(117, "update_account_response");
+        register(118, "batch_response");
+        register(119, "subscribe_stock_response");
+        register(120, "unsubscribe_stock_response");
+        // 服务端主动推送
+        register(121, "stock_update");
+    }
+
+    private MessageTypes() {}
+
+    private static void register(int id, String name) {
+        IDS.put(name, id);
+        NAMES.put(id, name);
+    }
+
+    /**
+     * @param name 消息类型名
+     * @return 类型编号，未登记返回 {@link #UNREGISTERED}
+     */
+    public static int idOf(String name) {
+        Integer id = name == null ? null : IDS.get(name);
+        return id == null ? UNREGISTERED : id;
+    }
+
+    /**
+     * @param id 类型编号
+     * @return 消息类型名，未登记返回 null
+     */
+    public static String nameOf(int id) {
+        return NAMES.get(id);
+    }
+}
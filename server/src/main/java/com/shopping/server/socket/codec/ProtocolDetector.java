@@ -0,0 +1,55 @@
+package com.shopping.server.socket.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.json.JsonObjectDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.util.AttributeKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 同一端口上的协议识别：根据连接的首个字节选择编解码器后把自己移出流水线。
+ * - 以 {@link #MAGIC} 开头：二进制协议，服务端回送同样的 4 字节确认，之后为长度前缀帧
+ * - 其他：原有的 JSON 文本协议（JsonObjectDecoder → StringDecoder；响应由处理器直接编码为 ByteBuf）
+ */
+public class ProtocolDetector extends ByteToMessageDecoder {
+    /** 二进制协议握手：0xC5 'S' 'P' + 版本号 */
+    public static final byte[] MAGIC = {(byte) 0xC5, 'S', 'P', 1};
+    /** 连接是否使用二进制协议 */
+    public static final AttributeKey<Boolean> BINARY = AttributeKey.valueOf("protocol.binary");
+
+    private static final int MAX_FRAME_LENGTH = 4 * 1024 * 1024;
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (!in.isReadable()) return;
+        int start = in.readerIndex();
+        ChannelPipeline p = ctx.pipeline();
+        if (in.getByte(start) == MAGIC[0]) {
+            if (in.readableBytes() < MAGIC.length) return;
+            for (int i = 1; i < MAGIC.length; i++) {
+                if (in.getByte(start + i) != MAGIC[i]) {
+                    // 无法识别的握手：不支持的版本或错误的客户端
+                    in.skipBytes(in.readableBytes());
+                    ctx.close();
+                    return;
+                }
+            }
+            in.skipBytes(MAGIC.length);
+            ctx.channel().attr(BINARY).set(Boolean.TRUE);
+            p.addAfter(ctx.name(), "binaryFrameDecoder", new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, 4, 0, 4));
+            p.addAfter("binaryFrameDecoder", "binaryCodec", new BinaryMessageCodec());
+            ctx.writeAndFlush(ctx.alloc().buffer(MAGIC.length).writeBytes(MAGIC));
+        } else {
+            p.addAfter(ctx.name(), "jsonDecoder", new JsonObjectDecoder());
+            p.addAfter("jsonDecoder", "stringDecoder", new StringDecoder(StandardCharsets.UTF_8));
+        }
+        // 移除时剩余的字节会交给新加入的解码器
+        p.remove(this);
+    }
+}
@@ -0,0 +1,14 @@
+package com.shopping.server.socket.command;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * batch：一次携带多个子请求，每个子请求与单独发送时的格式相同（含 type）
+ */
+@Data
+public class BatchRequest {
+    private List<Map<String, Object>> requests;
+}
@@ -0,0 +1,18 @@
+package com.shopping.server.socket.command;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * add_to_cart / remove_from_cart / set_cart_quantity：商品ID 兼容 product_id 与 productId 两种写法，
+ * quantity 未携带时为 null，由各处理器决定缺省值
+ */
+@Data
+public class CartItemRequest {
+    private String username;
+    @JsonProperty("product_id")
+    @JsonAlias("productId")
+    private Long productId;
+    private Integer quantity;
+}
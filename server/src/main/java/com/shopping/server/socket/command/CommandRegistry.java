@@ -0,0 +1,153 @@
+package com.shopping.server.socket.command;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 消息类型 -> (请求类, 预先绑定的 ObjectReader, 处理器) 的分发表。
+ * 解析时流式读取顶层字段，先定位 type 再直接绑定到对应的请求类，不经过中间的 Map。
+ */
+public class CommandRegistry {
+
+    /** 单个消息类型的处理器 */
+    public interface Handler<T> {
+        void handle(ChannelHandlerContext ctx, T request) throws Exception;
+    }
+
+    private static final class Command<T> {
+        final Class<T> requestType;
+        final ObjectReader reader;
+        final Handler<T> handler;
+        final boolean readOnly;
+
+        Command(Class<T> requestType, ObjectReader reader, Handler<T> handler, boolean readOnly) {
+            this.requestType = requestType;
+            this.reader = reader;
+            this.handler = handler;
+            this.readOnly = readOnly;
+        }
+
+        void invoke(ChannelHandlerContext ctx, Object request) throws Exception {
+            handler.handle(ctx, requestType.cast(request));
+        }
+    }
+
+    /** 一次解析的结果；消息类型未登记时 {@link #isKnown()} 为 false */
+    public static final class Invocation {
+        private final String type;
+        private final Command<?> command;
+        private final Object request;
+
+        Invocation(String type, Command<?> command, Object request) {
+            this.type = type;
+            this.command = command;
+            this.request = request;
+        }
+
+        public String getType() { return type; }
+        public boolean isKnown() { return command != null; }
+        /** @return 只读请求之间互不影响，可以并行执行 */
+        public boolean isReadOnly() { return command != null && command.readOnly; }
+
+        public void run(ChannelHandlerContext ctx) throws Exception {
+            command.invoke(ctx, request);
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final Map<String, Command<?>> commands = new HashMap<>();
+
+    public CommandRegistry(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * 登记消息类型（启动时调用，之后只读）
+     * @param type 消息类型
+     * @param requestType 请求类
+     * @param handler 处理器
+     */
+    public <T> void register(String type, Class<T> requestType, Handler<T> handler) {
+        add(type, requestType, handler, false);
+    }
+
+    /**
+     * 登记不修改任何状态的消息类型（batch 中可与其他只读请求并行执行）
+     * @param type 消息类型
+     * @param requestType 请求类
+     * @param handler 处理器
+     */
+    public <T> void registerReadOnly(String type, Class<T> requestType, Handler<T> handler) {
+        add(type, requestType, handler, true);
+    }
+
+    private <T> void add(String type, Class<T> requestType, Handler<T> handler, boolean readOnly) {
+        // 请求中的 type 及客户端附带的其他字段不影响绑定
+        ObjectReader reader = mapper.readerFor(requestType).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        commands.put(type, new Command<>(requestType, reader, handler, readOnly));
+    }
+
+    /**
+     * 解析一条 JSON 请求
+     * @param json 请求文本
+     * @return 解析结果
+     * @throws IOException JSON 格式错误或字段类型不匹配
+     */
+    public Invocation parse(String json) throws IOException {
+        try (JsonParser p = mapper.getFactory().createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) throw new IOException("Expected JSON object");
+            // type 之前出现的字段先缓存起来，找到 type 后与剩余字段拼接
+            TokenBuffer prefix = null;
+            String type = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                p.nextToken();
+                if ("type".equals(name)) {
+                    type = p.getValueAsString();
+                    break;
+                }
+                if (prefix == null) {
+                    prefix = new TokenBuffer(p);
+                    prefix.writeStartObject();
+                }
+                prefix.writeFieldName(name);
+                prefix.copyCurrentStructure(p);
+            }
+            Command<?> command = type == null ? null : commands.get(type);
+            if (command == null) return new Invocation(type, null, null);
+            if (prefix == null) {
+                // type 是第一个字段：只需补一个对象起始标记，其余字段直接从原解析器继续读取
+                prefix = new TokenBuffer(p);
+                prefix.writeStartObject();
+            }
+            JsonParser src = JsonParserSequence.createFlattened(false, prefix.asParser(p), p);
+            return new Invocation(type, command, command.reader.readValue(src));
+        }
+    }
+
+    /**
+     * 绑定已解码的请求（二进制协议）
+     * @param request 带 type 字段的请求
+     * @return 解析结果
+     * @throws IOException 字段类型不匹配
+     */
+    public Invocation bind(Map<String, Object> request) throws IOException {
+        Object t = request.get("type");
+        String type = t == null ? null : t.toString();
+        Command<?> command = type == null ? null : commands.get(type);
+        if (command == null) return new Invocation(type, null, null);
+        TokenBuffer buf = new TokenBuffer(mapper, false);
+        mapper.writeValue(buf, request);
+        return new Invocation(type, command, command.reader.readValue(buf.asParser()));
+    }
+}
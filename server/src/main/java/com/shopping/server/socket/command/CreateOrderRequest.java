@@ -0,0 +1,19 @@
+package com.shopping.server.socket.command;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** create_order */
+@Data
+public class CreateOrderRequest {
+    private String username;
+    private List<Line> items = new ArrayList<>();
+
+    @Data
+    public static class Line {
+        private Long productId;
+        private int quantity = 1;
+    }
+}
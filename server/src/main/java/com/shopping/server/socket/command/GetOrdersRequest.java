@@ -0,0 +1,19 @@
+package com.shopping.server.socket.command;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * get_orders：before 为订单ID游标，limit 为 0 时返回全部；时间为 ISO-8601 字符串
+ */
+@Data
+public class GetOrdersRequest {
+    private String username;
+    private long before;
+    private int limit;
+    private String status;
+    @JsonProperty("start_time")
+    private String startTime;
+    @JsonProperty("end_time")
+    private String endTime;
+}
@@ -0,0 +1,14 @@
+package com.shopping.server.socket.command;
+
+import lombok.Data;
+
+/** get_products */
+@Data
+public class GetProductsRequest {
+    private int page = 1;
+    private int size = 10;
+    // 游标分页：sort 为 id / price / stock，order 为 asc / desc，cursor 为上一页的 next_cursor
+    private String sort;
+    private String order;
+    private String cursor;
+}
@@ -0,0 +1,10 @@
+package com.shopping.server.socket.command;
+
+import lombok.Data;
+
+/** login */
+@Data
+public class LoginRequest {
+    private String username;
+    private String password;
+}
@@ -0,0 +1,11 @@
+package com.shopping.server.socket.command;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/** get_product_detail */
+@Data
+public class ProductDetailRequest {
+    @JsonProperty("product_id")
+    private Long productId;
+}
@@ -0,0 +1,16 @@
+package com.shopping.server.socket.command;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * get_promotions：折扣力度最大的前 limit 个促销商品；携带 min_price/max_price 时改为按原价区间筛选
+ */
+@Data
+public class PromotionsRequest {
+    private int limit = 10;
+    @JsonProperty("min_price")
+    private Double minPrice;
+    @JsonProperty("max_price")
+    private Double maxPrice;
+}
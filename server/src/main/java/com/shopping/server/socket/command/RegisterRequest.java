@@ -0,0 +1,11 @@
+package com.shopping.server.socket.command;
+
+import lombok.Data;
+
+/** register */
+@Data
+public class RegisterRequest {
+    private String username;
+    private String password;
+    private String phone = "";
+}
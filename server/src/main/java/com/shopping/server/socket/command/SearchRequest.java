@@ -0,0 +1,13 @@
+package com.shopping.server.socket.command;
+
+import lombok.Data;
+
+/**
+ * search_products / search：size 为 0 时返回全部命中
+ */
+@Data
+public class SearchRequest {
+    private String keyword = "";
+    private int page = 1;
+    private int size = 0;
+}
@@ -0,0 +1,14 @@
+package com.shopping.server.socket.command;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+/** subscribe_stock / unsubscribe_stock */
+@Data
+public class StockSubscriptionRequest {
+    // unsubscribe_stock 不传表示取消全部
+    @JsonProperty("product_ids")
+    private List<Long> productIds;
+}
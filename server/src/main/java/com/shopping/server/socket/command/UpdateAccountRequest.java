@@ -0,0 +1,14 @@
+package com.shopping.server.socket.command;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/** update_account_info：各字段为 null 表示不修改 */
+@Data
+public class UpdateAccountRequest {
+    private String username;
+    private String phone;
+    private String password;
+    @JsonProperty("new_username")
+    private String newUsername;
+}
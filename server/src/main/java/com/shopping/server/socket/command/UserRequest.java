@@ -0,0 +1,12 @@
+package com.shopping.server.socket.command;
+
+import lombok.Data;
+
+/**
+ * 只携带（可选）用户名的请求；未携带时使用连接上已登录的用户。
+ * 用于 get_cart / clear_cart / checkout / get_account_info / get_carousel / get_recommendations / get_promotions
+ */
+@Data
+public class UserRequest {
+    private String username;
+}
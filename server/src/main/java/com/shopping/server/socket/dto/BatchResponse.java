@@ -0,0 +1,16 @@
+package com.shopping.server.socket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * batch 的响应：按子请求顺序排列的全部响应（一个子请求可能产生多条响应）
+ */
+@Getter
+@AllArgsConstructor
+public class BatchResponse {
+    private final String type = "batch_response";
+    private final List<Object> responses;
+}
@@ -0,0 +1,16 @@
+package com.shopping.server.socket.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * get_cart 的响应（带实时库存）
+ */
+@Getter
+@AllArgsConstructor
+public class CartItemsResponse {
+    private final String type = "cart_items";
+    private final List<CartLine> items;
+}
@@ -0,0 +1,24 @@
+package com.shopping.server.socket.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 购物车条目（cart_items 中的 items 元素，字段名沿用购物车存储的下划线命名）
+ */
+@Getter
+@AllArgsConstructor
+public class CartLine {
+    @JsonProperty("product_id")
+    private final long productId;
+    private final String name;
+    private final double price;
+    private final int quantity;
+    private final String description;
+    @JsonProperty("image_url")
+    private final String imageUrl;
+    private final int stock;
+    @JsonProperty("on_sale")
+    private final boolean onSale;
+}
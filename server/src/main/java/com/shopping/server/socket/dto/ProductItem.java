@@ -0,0 +1,23 @@
+package com.shopping.server.socket.dto;
+
+import com.shopping.server.catalog.CatalogProduct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 商品列表项（products_response 中的 products 元素）
+ */
+@Getter
+@AllArgsConstructor
+public class ProductItem {
+    private final long id;
+    private final String name;
+    private final double price;
+    private final String description;
+    private final String imageUrl;
+    private final int stock;
+
+    public static ProductItem of(CatalogProduct p) {
+        return new ProductItem(p.getProductId(), p.getName(), p.getPrice(), p.getDescription(), p.getImageUrl(), p.getStock());
+    }
+}
@@ -0,0 +1,27 @@
+package com.shopping.server.socket.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * get_products / search_products 的响应
+ */
+@Getter
+@AllArgsConstructor
+public class ProductsResponse {
+    private final String type = "products_response";
+    private final int total;
+    private final List<ProductItem> products;
+    // 游标分页时的下一页游标，没有更多或按页码分页时不输出
+    @JsonProperty("next_cursor")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String nextCursor;
+
+    public ProductsResponse(int total, List<ProductItem> products) {
+        this(total, products, null);
+    }
+}
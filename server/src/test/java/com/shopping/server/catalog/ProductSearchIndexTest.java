@@ -0,0 +1,98 @@
+package com.shopping.server.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+    private ProductCatalog catalog;
+    private ProductSearchIndex search;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ProductCatalog();
+        catalog.putAll(Arrays.asList(
+                product(1001, "苹果 iPhone", "苹果手机"),
+                product(1002, "小米 手机", "性价比"),
+                product(1003, "联想 笔记本", "ThinkPad notebook"),
+                product(1004, "机械键盘", "适合笔记本外接"),
+                product(1005, "Notebook stand", "aluminium")));
+        search = new ProductSearchIndex(catalog);
+    }
+
+    @Test
+    void tokenizerSplitsCjkIntoBigramsAndLatinIntoSubstrings() {
+        Map<String, Integer> terms = new HashMap<>();
+        SearchTokenizer.indexTokens("小米手机 iPhone", 1, terms);
+        assertTrue(terms.containsKey("小米"));
+        assertTrue(terms.containsKey("手机"));
+        assertTrue(terms.containsKey("phone"));
+        assertTrue(terms.containsKey("iph"));
+        // 不跨词
+        assertFalse(terms.containsKey("机i"));
+        assertEquals(Arrays.asList("笔记", "记本", "pro"), SearchTokenizer.queryTokens("笔记本 PRO"));
+        assertEquals(Arrays.asList("机"), SearchTokenizer.queryTokens("机"));
+    }
+
+    @Test
+    void latinQueryMatchesAnywhereInWord() {
+        assertEquals(Arrays.asList(1001L), ids(search.search("phone", 0, 0)));
+        assertEquals(Arrays.asList(1005L, 1003L), ids(search.search("BOOK", 0, 0)));
+    }
+
+    @Test
+    void nameHitsRankAboveDescriptionHits() {
+        // 名称命中权重高于描述命中，同分按商品ID升序
+        assertEquals(Arrays.asList(1003L, 1004L), ids(search.search("笔记本", 0, 0)));
+        assertEquals(Arrays.asList(1002L, 1001L), ids(search.search("手机", 0, 0)));
+    }
+
+    @Test
+    void allTermsMustMatch() {
+        assertEquals(Arrays.asList(1003L), ids(search.search("笔记本 think", 0, 0)));
+        assertEquals(0, search.search("笔记本 iphone", 0, 0).getTotal());
+        assertEquals(0, search.search("不存在", 0, 0).getTotal());
+    }
+
+    @Test
+    void pagesKeepTotalAndClampOffset() {
+        ProductSearchIndex.Result first = search.search("book", 0, 1);
+        assertEquals(2, first.getTotal());
+        assertEquals(Arrays.asList(1005L), ids(first));
+        assertEquals(Arrays.asList(1003L), ids(search.search("book", 1, 1)));
+        assertEquals(0, search.search("book", Integer.MAX_VALUE, 10).getProducts().size());
+        // 空查询按目录顺序分页
+        ProductSearchIndex.Result all = search.search("", 3, 10);
+        assertEquals(5, all.getTotal());
+        assertEquals(Arrays.asList(1004L, 1005L), ids(all));
+        assertEquals(0, search.search(" ", Integer.MAX_VALUE, 10).getProducts().size());
+    }
+
+    @Test
+    void followsCatalogUpdates() {
+        catalog.put(product(1001, "苹果 iPad", "平板"));
+        assertEquals(0, search.search("phone", 0, 0).getTotal());
+        assertEquals(Arrays.asList(1001L), ids(search.search("ipad", 0, 0)));
+        catalog.remove(1003);
+        assertEquals(Arrays.asList(1005L), ids(search.search("book", 0, 0)));
+    }
+
+    private static List<Long> ids(ProductSearchIndex.Result result) {
+        List<Long> out = new ArrayList<>();
+        for (CatalogProduct p : result.getProducts()) out.add(p.getProductId());
+        return out;
+    }
+
+    private static CatalogProduct product(long id, String name, String description) {
+        return new CatalogProduct(id, name, 100.0, description, "", 10, false);
+    }
+}
@@ -0,0 +1,104 @@
+package com.shopping.server.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProductSortIndexTest {
+    private ProductCatalog catalog;
+    private StockEngine stock;
+    private ProductSortIndex index;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ProductCatalog();
+        catalog.putAll(Arrays.asList(
+                product(1001, 5999.00, 5),
+                product(1002, 199.00, 50),
+                product(1003, 399.00, 20),
+                product(1004, 199.00, 10),   // 与 1002 同价，按ID排序
+                product(1005, 89.00, 30)));
+        stock = new StockEngine(catalog);
+        index = new ProductSortIndex(catalog, stock);
+    }
+
+    @Test
+    void cursorWalksEveryProductOnceInBothDirections() {
+        assertEquals(Arrays.asList(1005L, 1002L, 1004L, 1003L, 1001L), walk(ProductSortIndex.SortKey.PRICE, false, 2));
+        assertEquals(Arrays.asList(1001L, 1003L, 1004L, 1002L, 1005L), walk(ProductSortIndex.SortKey.PRICE, true, 2));
+        assertEquals(Arrays.asList(1001L, 1002L, 1003L, 1004L, 1005L), walk(ProductSortIndex.SortKey.ID, false, 3));
+        assertEquals(Arrays.asList(1001L, 1004L, 1003L, 1005L, 1002L), walk(ProductSortIndex.SortKey.STOCK, false, 5));
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        ProductSortIndex.Page page = index.page(ProductSortIndex.SortKey.ID, false, null, 5);
+        assertEquals(5, page.getProducts().size());
+        assertNull(page.getNextCursor());
+        assertNull(index.page(ProductSortIndex.SortKey.ID, true, null, 10).getNextCursor());
+    }
+
+    @Test
+    void cursorStaysValidAcrossCatalogChanges() {
+        ProductSortIndex.Page first = index.page(ProductSortIndex.SortKey.PRICE, false, null, 2);
+        assertEquals(Arrays.asList(1005L, 1002L), ids(first.getProducts()));
+        // 游标定位的是 (键, ID)，之前插入的商品不会导致后续页重复或遗漏
+        catalog.put(product(1006, 99.00, 1));
+        ProductSortIndex.Page second = index.page(ProductSortIndex.SortKey.PRICE, false, first.getNextCursor(), 2);
+        assertEquals(Arrays.asList(1004L, 1003L), ids(second.getProducts()));
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> index.page(ProductSortIndex.SortKey.ID, false, "abc", 2));
+        assertThrows(IllegalArgumentException.class, () -> index.page(ProductSortIndex.SortKey.ID, true, "1:x", 2));
+        assertNull(ProductSortIndex.SortKey.parse("name"));
+        assertEquals(ProductSortIndex.SortKey.PRICE, ProductSortIndex.SortKey.parse("Price"));
+    }
+
+    @Test
+    void stockViewIsReusedUntilStale() throws Exception {
+        assertEquals(1001L, first(ProductSortIndex.SortKey.STOCK));
+        // 只有库存变化：滞后时间内沿用旧视图，不逐次重排
+        stock.reserve(Collections.singletonList(new StockEngine.Line(1002, 48)));
+        assertEquals(1001L, first(ProductSortIndex.SortKey.STOCK));
+        Thread.sleep(ProductSortIndex.STOCK_MAX_STALE_MS + 50);
+        assertEquals(1002L, first(ProductSortIndex.SortKey.STOCK));
+        // 目录变化立即重建
+        catalog.put(product(1007, 1.00, 0));
+        assertEquals(1007L, first(ProductSortIndex.SortKey.STOCK));
+    }
+
+    private long first(ProductSortIndex.SortKey key) {
+        return index.page(key, false, null, 1).getProducts().get(0).getProductId();
+    }
+
+    private List<Long> walk(ProductSortIndex.SortKey key, boolean descending, int size) {
+        List<Long> out = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProductSortIndex.Page page = index.page(key, descending, cursor, size);
+            out.addAll(ids(page.getProducts()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return out;
+    }
+
+    private static List<Long> ids(List<CatalogProduct> products) {
+        List<Long> out = new ArrayList<>(products.size());
+        for (CatalogProduct p : products) out.add(p.getProductId());
+        return out;
+    }
+
+    private static CatalogProduct product(long id, double price, int stock) {
+        return new CatalogProduct(id, "p" + id, price, "", "", stock, false);
+    }
+}
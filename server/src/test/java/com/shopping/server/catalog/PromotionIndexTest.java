@@ -0,0 +1,65 @@
+package com.shopping.server.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PromotionIndexTest {
+    private ProductCatalog catalog;
+    private PromotionIndex promotions;
+
+    @BeforeEach
+    void setUp() {
+        // 促销数据只在测试中构造，预置商品保持原价
+        catalog = new ProductCatalog();
+        catalog.putAll(Arrays.asList(
+                onSale(1005, 199.00, 149.00),   // 25%
+                onSale(1006, 400.00, 300.00),   // 25%
+                product(1007, 1299.00),
+                onSale(1009, 299.00, 199.00),   // 33%
+                onSale(1010, 1000.00, 900.00),  // 10%
+                onSale(1013, 89.00, 99.00)));   // 促销价高于原价，不收录
+        promotions = new PromotionIndex(catalog);
+    }
+
+    @Test
+    void topRanksByDiscountThenId() {
+        assertEquals(Arrays.asList(1009L, 1005L, 1006L, 1010L), ids(promotions.top(10)));
+        assertEquals(Arrays.asList(1009L, 1005L), ids(promotions.top(2)));
+        assertEquals(4, promotions.size());
+    }
+
+    @Test
+    void priceRangeIsInclusive() {
+        assertEquals(Arrays.asList(1005L, 1009L, 1006L), ids(promotions.priceBetween(199.00, 400.00)));
+        assertEquals(Arrays.asList(), ids(promotions.priceBetween(500, 900)));
+    }
+
+    @Test
+    void followsCatalogChanges() {
+        // 取消促销、新增促销、删除商品
+        catalog.putAll(Arrays.asList(product(1009, 299.00), onSale(1007, 1299.00, 649.50)));
+        catalog.remove(1005);
+        assertEquals(Arrays.asList(1007L, 1006L, 1010L), ids(promotions.top(10)));
+        assertEquals(Arrays.asList(1006L, 1010L, 1007L), ids(promotions.priceBetween(0, Double.MAX_VALUE)));
+    }
+
+    private static List<Long> ids(List<CatalogProduct> products) {
+        List<Long> out = new ArrayList<>(products.size());
+        for (CatalogProduct p : products) out.add(p.getProductId());
+        return out;
+    }
+
+    private static CatalogProduct product(long id, double price) {
+        return new CatalogProduct(id, "p" + id, price, "", "", 10, false);
+    }
+
+    private static CatalogProduct onSale(long id, double price, double discountPrice) {
+        return new CatalogProduct(id, "p" + id, price, "", "", 10, true, discountPrice);
+    }
+}
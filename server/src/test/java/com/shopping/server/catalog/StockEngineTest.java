@@ -0,0 +1,108 @@
+package com.shopping.server.catalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StockEngineTest {
+    private ProductCatalog catalog;
+    private StockEngine stock;
+    private final List<Long> changed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ProductCatalog();
+        catalog.putAll(Arrays.asList(product(1, 5), product(2, 1), product(3, 100)));
+        stock = new StockEngine(catalog);
+        stock.addListener(changed::add);
+    }
+
+    @Test
+    void reservesAllLines() {
+        StockEngine.Reservation r = stock.reserve(lines(1, 2, 2, 1));
+        assertNotNull(r);
+        assertEquals(3, stockOf(1));
+        assertEquals(0, stockOf(2));
+        assertEquals(Arrays.asList(1L, 2L), changed);
+    }
+
+    @Test
+    void insufficientLineLeavesNoDeduction() {
+        long version = stock.version();
+        // 商品 1 先被扣减，商品 2 不足时须归还
+        assertNull(stock.reserve(lines(1, 2, 2, 2)));
+        assertEquals(5, stockOf(1));
+        assertEquals(1, stockOf(2));
+        assertEquals(version, stock.version());
+        assertEquals(0, changed.size());
+    }
+
+    @Test
+    void unknownProductOrInvalidQuantityFails() {
+        assertNull(stock.reserve(lines(1, 1, 99, 1)));
+        assertNull(stock.reserve(lines(1, 0)));
+        assertNull(stock.reserve(lines(1, -3)));
+        assertNull(stock.reserve(new ArrayList<>()));
+        assertEquals(5, stockOf(1));
+    }
+
+    @Test
+    void duplicateLinesAreMerged() {
+        assertNull(stock.reserve(lines(1, 3, 1, 3)));
+        assertEquals(5, stockOf(1));
+        assertNotNull(stock.reserve(lines(1, 2, 3, 1, 1, 3)));
+        assertEquals(0, stockOf(1));
+        assertEquals(99, stockOf(3));
+    }
+
+    @Test
+    void mergedQuantityOverflowIsRejected() {
+        // 两行合计超过 int 范围：不能溢出为负数而变成加库存
+        assertNull(stock.reserve(lines(3, 1_100_000_000, 3, 1_100_000_000)));
+        assertNull(stock.reserve(lines(3, Integer.MAX_VALUE, 3, 1)));
+        assertEquals(100, stockOf(3));
+    }
+
+    @Test
+    void releaseRestoresOnce() {
+        StockEngine.Reservation r = stock.reserve(lines(1, 4, 3, 10));
+        assertNotNull(r);
+        changed.clear();
+        r.release();
+        r.release();
+        assertEquals(5, stockOf(1));
+        assertEquals(100, stockOf(3));
+        assertEquals(Arrays.asList(1L, 3L), changed);
+    }
+
+    @Test
+    void restockNotifiesListeners() {
+        assertEquals(3, stock.restock(2, 2));
+        assertEquals(-1, stock.restock(99, 1));
+        assertEquals(Arrays.asList(2L), changed);
+    }
+
+    private int stockOf(long id) {
+        return catalog.get(id).getStock();
+    }
+
+    private static CatalogProduct product(long id, int stock) {
+        return new CatalogProduct(id, "p" + id, 10.0, "", "", stock, false);
+    }
+
+    // 参数依次为 商品ID, 数量, 商品ID, 数量 ...
+    private static List<StockEngine.Line> lines(long... idAndQuantity) {
+        List<StockEngine.Line> out = new ArrayList<>();
+        for (int i = 0; i < idAndQuantity.length; i += 2) {
+            out.add(new StockEngine.Line(idAndQuantity[i], (int) idAndQuantity[i + 1]));
+        }
+        return out;
+    }
+}
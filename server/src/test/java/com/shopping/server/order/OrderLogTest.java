@@ -0,0 +1,101 @@
+package com.shopping.server.order;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OrderLogTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoveredIdsStaySparseAndNewIdsContinueAfterMax() {
+        OrderLog log = new OrderLog(4, MAPPER);
+        // 乱序、不连续、重复ID（保留最后一个）
+        log.recover(Arrays.asList(order(7, "a"), order(3, "b"), order(7, "c"), order(10, "d")));
+        assertEquals("b", status(log.get(3)));
+        assertEquals("c", status(log.get(7)));
+        assertNull(log.get(4));
+        assertNull(log.get(99));
+
+        long id = log.allocate();
+        assertEquals(11, id);
+        log.publish(id, order(id, "new"));
+        assertEquals("new", status(log.get(11)));
+        assertThrows(IllegalStateException.class, () -> log.recover(new ArrayList<>()));
+    }
+
+    @Test
+    void abandonedIdsLeaveEmptySlots() {
+        OrderLog log = new OrderLog(4, MAPPER);
+        for (int i = 0; i < 6; i++) {
+            long id = log.allocate();
+            if (id == 2) log.abandon(id);
+            else log.publish(id, order(id, "s" + id));
+        }
+        assertEquals(6, log.size());
+        assertNull(log.get(2));
+        List<Long> ids = new ArrayList<>();
+        log.forEach(o -> ids.add(((Number) o.get("orderId")).longValue()));
+        assertEquals(Arrays.asList(1L, 3L, 4L, 5L, 6L), ids);
+    }
+
+    @Test
+    void spilledSegmentsReadBackAndKeepReplacements() throws Exception {
+        OrderLog log = new OrderLog(4, MAPPER);
+        log.enableSpill(dir);
+        for (int i = 0; i < 10; i++) {
+            long id = log.allocate();
+            log.publish(id, order(id, "s" + id));
+        }
+        // 前两个段已写满封存并转储，第三段仍在堆内
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.filter(p -> p.toString().endsWith(".seg")).count());
+        }
+        assertEquals("s2", status(log.get(2)));
+        assertEquals("s9", status(log.get(9)));
+
+        log.replace(2, order(2, "PAID"));
+        assertEquals("PAID", status(log.get(2)));
+
+        // 快照：已转储的订单直接拷贝原始字节，改动取 overlay
+        StringWriter json = new StringWriter();
+        try (JsonGenerator gen = MAPPER.getFactory().createGenerator(json)) {
+            log.writeTo(gen);
+        }
+        List<Map<String, Object>> written = MAPPER.readValue(json.toString(), new TypeReference<List<Map<String, Object>>>() {});
+        assertEquals(10, written.size());
+        assertEquals("PAID", status(written.get(1)));
+        assertEquals("s7", status(written.get(6)));
+    }
+
+    private static Map<String, Object> order(long id, String status) {
+        Map<String, Object> o = new HashMap<>();
+        o.put("orderId", id);
+        o.put("status", status);
+        o.put("total_price", 1.5 * id);
+        return o;
+    }
+
+    private static String status(Map<String, Object> order) {
+        return (String) order.get("status");
+    }
+}
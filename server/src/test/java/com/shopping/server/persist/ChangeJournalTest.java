@@ -0,0 +1,149 @@
+package com.shopping.server.persist;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class ChangeJournalTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, String> state = new ConcurrentHashMap<>();
+    private ChangeJournal journal;
+
+    @AfterEach
+    void tearDown() {
+        if (journal != null) journal.close();
+    }
+
+    @Test
+    void snapshotPlusTailReplayRestoresLatestState() throws Exception {
+        journal = new ChangeJournal(dir, MAPPER);
+        journal.configure(0, 1, 50);
+        journal.start(this::writeState);
+        put("k1", "v1");
+        put("k2", "v2");
+        await(() -> Files.exists(dir.resolve("checkpoint")));
+
+        // 之后的变更只在日志段中（快照只在关闭时做）
+        journal.configure(0, 1, 0);
+        put("k1", "v1b");
+        remove("k2");
+        put("k3", "v3");
+        await(() -> tailLines().size() == 3);
+        // 模拟崩溃：段尾写了一半的记录
+        Files.write(lastSegment(), "{\"op\":\"kv.put\",\"key\":\"k4\",\"va".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        Map<String, String> restored = recover();
+        Map<String, String> expected = new HashMap<>();
+        expected.put("k1", "v1b");
+        expected.put("k3", "v3");
+        assertEquals(expected, restored);
+    }
+
+    @Test
+    void replayWithoutSnapshotUsesWholeJournal() throws Exception {
+        journal = new ChangeJournal(dir, MAPPER);
+        journal.configure(0, 1, 0);
+        journal.start(this::writeState);
+        put("a", "1");
+        put("a", "2");
+        put("b", "1");
+        remove("b");
+        await(() -> tailLines().size() == 4);
+
+        Map<String, String> restored = recover();
+        assertEquals(Map.of("a", "2"), restored);
+    }
+
+    @Test
+    void appendAfterCloseIsRejected() throws Exception {
+        journal = new ChangeJournal(dir, MAPPER);
+        journal.start(this::writeState);
+        journal.close();
+        try {
+            put("k", "v");
+            fail("append after close should fail");
+        } catch (IllegalStateException expected) {
+            // 停止后拒绝写入，而不是在内存中堆积
+        }
+    }
+
+    private void put(String key, String value) {
+        state.put(key, value);
+        journal.append("kv", key, () -> state.get(key));
+    }
+
+    private void remove(String key) {
+        state.remove(key);
+        journal.append("kv", key, () -> state.get(key));
+    }
+
+    /** 按启动流程恢复：先加载快照，再回放检查点之后的日志段 */
+    private Map<String, String> recover() throws IOException {
+        Map<String, String> restored = new HashMap<>();
+        Path snapshot = dir.resolve("state.json");
+        if (Files.exists(snapshot)) {
+            restored.putAll(MAPPER.readValue(snapshot.toFile(), new TypeReference<Map<String, String>>() {}));
+        }
+        new ChangeJournal(dir, MAPPER).replay((op, key, value) -> {
+            if ("kv.put".equals(op)) restored.put(key, value.asText());
+            else if ("kv.remove".equals(op)) restored.remove(key);
+        });
+        return restored;
+    }
+
+    private void writeState() throws IOException {
+        Path tmp = dir.resolve("state.json.tmp");
+        MAPPER.writeValue(tmp.toFile(), new HashMap<>(state));
+        Files.move(tmp, dir.resolve("state.json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = files.filter(p -> p.getFileName().toString().startsWith("journal-"))
+                    .sorted().collect(Collectors.toList());
+            return segments.get(segments.size() - 1);
+        }
+    }
+
+    private List<String> tailLines() {
+        try {
+            return Files.readAllLines(lastSegment(), StandardCharsets.UTF_8).stream()
+                    .filter(l -> !l.isEmpty()).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
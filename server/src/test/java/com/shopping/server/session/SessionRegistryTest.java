@@ -0,0 +1,46 @@
+package com.shopping.server.session;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SessionRegistryTest {
+    private final SessionRegistry sessions = new SessionRegistry();
+
+    @Test
+    void renameMovesEverySessionOfTheUser() {
+        EmbeddedChannel a = new EmbeddedChannel();
+        EmbeddedChannel b = new EmbeddedChannel();
+        EmbeddedChannel other = new EmbeddedChannel();
+        sessions.bind(a, "alice");
+        sessions.bind(b, "alice");
+        sessions.bind(other, "bob");
+
+        sessions.rename("alice", "alice2");
+        assertEquals("alice2", sessions.username(a));
+        assertEquals("alice2", sessions.username(b));
+        assertEquals("bob", sessions.username(other));
+
+        // 迁移后的会话可再次整体改名
+        sessions.rename("alice2", "alice3");
+        assertEquals("alice3", sessions.username(a));
+        assertEquals("alice3", sessions.username(b));
+    }
+
+    @Test
+    void unbindAndRebindDetachFromOldName() {
+        EmbeddedChannel a = new EmbeddedChannel();
+        EmbeddedChannel b = new EmbeddedChannel();
+        sessions.bind(a, "alice");
+        sessions.bind(b, "alice");
+        sessions.unbind(a);
+        // 连接改为登录另一个用户后不再随原用户改名
+        sessions.bind(b, "bob");
+
+        sessions.rename("alice", "alice2");
+        assertNull(sessions.username(a));
+        assertEquals("bob", sessions.username(b));
+    }
+}
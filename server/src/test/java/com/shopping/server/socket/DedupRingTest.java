@@ -0,0 +1,76 @@
+package com.shopping.server.socket;
+
+import com.shopping.server.socket.codec.BinaryMessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DedupRingTest {
+
+    @Test
+    void distinctBinaryPayloadsAreNotDeduplicated() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new BinaryMessageCodec());
+        // 容量足够大，窗口期内 75 个请求都留在环中
+        DedupRing ring = new DedupRing(128, 400);
+        Set<Long> hashes = new HashSet<>();
+        for (long productId = 1001; productId <= 1015; productId++) {
+            for (int quantity = 1; quantity <= 5; quantity++) {
+                long h = frameHash(ch, setCartQuantity(productId, quantity));
+                hashes.add(h);
+                assertFalse(ring.isDuplicate(h, 1000), "product " + productId + " x " + quantity);
+            }
+        }
+        assertEquals(75, hashes.size());
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    void identicalBinaryPayloadIsDeduplicatedWithinWindow() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new BinaryMessageCodec());
+        DedupRing ring = new DedupRing(32, 400);
+        long first = frameHash(ch, setCartQuantity(1008, 1));
+        long again = frameHash(ch, setCartQuantity(1008, 1));
+        assertEquals(first, again);
+        assertFalse(ring.isDuplicate(first, 1000));
+        assertTrue(ring.isDuplicate(again, 1200));
+        // 窗口期过后同样的请求再次处理
+        assertFalse(ring.isDuplicate(again, 1400));
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    void jsonRequestsDedupByContent() {
+        DedupRing ring = new DedupRing(32, 400);
+        assertFalse(ring.isDuplicate(DedupRing.hash("{\"type\":\"set_cart_quantity\",\"product_id\":1008,\"quantity\":1}"), 0));
+        assertFalse(ring.isDuplicate(DedupRing.hash("{\"type\":\"set_cart_quantity\",\"product_id\":1014,\"quantity\":3}"), 0));
+        assertTrue(ring.isDuplicate(DedupRing.hash("{\"type\":\"set_cart_quantity\",\"product_id\":1008,\"quantity\":1}"), 10));
+    }
+
+    private static Map<String, Object> setCartQuantity(long productId, int quantity) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("type", "set_cart_quantity");
+        m.put("product_id", productId);
+        m.put("quantity", quantity);
+        return m;
+    }
+
+    /** 编码成帧后去掉长度前缀（相当于 LengthFieldBasedFrameDecoder 的输出），解码并取帧哈希 */
+    private static long frameHash(EmbeddedChannel ch, Map<String, Object> msg) throws Exception {
+        ByteBuf frame = BinaryMessageCodec.encodeFrame(UnpooledByteBufAllocator.DEFAULT, msg);
+        frame.skipBytes(4);
+        ch.writeInbound(frame);
+        Map<?, ?> decoded = ch.readInbound();
+        assertEquals(msg.get("quantity"), decoded.get("quantity"));
+        return ch.attr(BinaryMessageCodec.FRAME_HASH).get();
+    }
+}
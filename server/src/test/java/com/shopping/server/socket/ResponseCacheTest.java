@@ -0,0 +1,77 @@
+package com.shopping.server.socket;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseCacheTest {
+    private final ResponseCache cache = new ResponseCache();
+    private final AtomicInteger builds = new AtomicInteger();
+
+    @Test
+    void hitReusesEncodedPayload() throws Exception {
+        assertEquals("{\"type\":\"a\"}\n", text(cache.get(false, "get_carousel", 0, builder("a"))));
+        assertEquals("{\"type\":\"a\"}\n", text(cache.get(false, "get_carousel", 0, builder("b"))));
+        assertEquals(1, builds.get());
+        // 二进制连接单独缓存
+        release(cache.get(true, "get_carousel", 0, builder("a")));
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    void versionChangeReleasesStaleEntriesOfSameType() throws Exception {
+        ByteBuf page1 = cache.get(false, "get_products:1:10", 1, builder("p1"));
+        ByteBuf carousel = cache.get(false, "get_carousel", 0, builder("c"));
+        page1.release();
+        carousel.release();
+        assertEquals(1, page1.refCnt());
+
+        // 商品数据变化后任一 get_products 键以新版本写入：同类型的旧条目立即释放，其他类型不受影响
+        release(cache.get(false, "get_products:2:10", 2, builder("p2")));
+        assertEquals(0, page1.refCnt());
+        assertEquals(1, carousel.refCnt());
+
+        // 生成期间已有更新版本写入时，落后的结果不进入缓存
+        release(cache.get(false, "get_products:1:10", 1, builder("old")));
+        assertEquals("{\"type\":\"p1b\"}\n", text(cache.get(false, "get_products:1:10", 2, builder("p1b"))));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() throws Exception {
+        ByteBuf eldest = cache.get(false, "get_products:0:10", 1, builder("0"));
+        eldest.release();
+        release(cache.get(false, "get_carousel", 0, builder("hot")));
+        for (int page = 1; page <= 600; page++) {
+            release(cache.get(false, "get_products:" + page + ":10", 1, builder("p")));
+            // 热点键持续被访问，不会被一次性分页请求挤出
+            release(cache.get(false, "get_carousel", 0, builder("rebuilt")));
+        }
+        assertEquals(0, eldest.refCnt());
+        assertEquals("{\"type\":\"hot\"}\n", text(cache.get(false, "get_carousel", 0, builder("rebuilt"))));
+    }
+
+    private Callable<Object> builder(String type) {
+        return () -> {
+            builds.incrementAndGet();
+            return Collections.singletonMap("type", type);
+        };
+    }
+
+    private static String text(ByteBuf buf) {
+        try {
+            return buf.toString(StandardCharsets.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void release(ByteBuf buf) {
+        buf.release();
+    }
+}
@@ -0,0 +1,166 @@
+package com.shopping.server.socket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopping.server.socket.codec.ProtocolDetector;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.json.JsonObjectDecoder;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * batch 的端到端行为：经本地传输连接到带业务线程池的处理器（与线上相同的协议识别 → 处理器流水线）。
+ * 处理器的文件持久化写在工作目录的 server-data 下（surefire 工作目录为 target），要求启动前不存在，结束后删除。
+ */
+class SocketMessageHandlerBatchTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Path DATA_DIR = Paths.get("server-data");
+    private static final LocalAddress ADDRESS = new LocalAddress("batch-test");
+
+    private static EventLoopGroup loops;
+    private static EventExecutorGroup business;
+    private static Channel server;
+
+    @BeforeAll
+    static void start() throws Exception {
+        assumeFalse(Files.exists(DATA_DIR), "server-data already exists in the working directory");
+        loops = new DefaultEventLoopGroup(2);
+        business = new DefaultEventExecutorGroup(4);
+        SocketMessageHandler handler = new SocketMessageHandler(business);
+        server = new ServerBootstrap().group(loops).channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    protected void initChannel(LocalChannel ch) {
+                        ch.pipeline().addLast(new ProtocolDetector(), handler);
+                    }
+                }).bind(ADDRESS).sync().channel();
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        if (server == null) return;
+        server.close().sync();
+        loops.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        business.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        SocketMessageHandler.journal().close();
+        try (Stream<Path> files = Files.walk(DATA_DIR)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    @Test
+    void responsesKeepSubRequestOrderAndLaterRequestsWait() throws Exception {
+        try (Connection c = new Connection()) {
+            c.send("{\"type\":\"register\",\"username\":\"batch-user\",\"password\":\"secret1\"}");
+            c.next();
+            c.send("{\"type\":\"login\",\"username\":\"batch-user\",\"password\":\"secret1\"}");
+            assertTrue(c.next().path("success").asBoolean());
+
+            // 只读子请求并行执行，随后的加购在连接的业务线程顺序执行；batch 之后紧跟的请求一次写出
+            c.send("{\"type\":\"batch\",\"requests\":["
+                    + "{\"type\":\"search\",\"keyword\":\"手机\"},"
+                    + "{\"type\":\"get_product_detail\",\"product_id\":1003},"
+                    + "{\"type\":\"get_cart\"},"
+                    + "{\"type\":\"no_such_type\"},"
+                    + "{\"type\":\"add_to_cart\",\"product_id\":1001,\"quantity\":2},"
+                    + "{\"type\":\"get_carousel\"}]}"
+                    + "{\"type\":\"get_cart\"}");
+
+            JsonNode batch = c.next();
+            assertEquals("batch_response", batch.path("type").asText());
+            List<String> types = new ArrayList<>();
+            for (JsonNode r : batch.path("responses")) types.add(r.path("type").asText());
+            assertEquals(List.of("search_results", "product_detail", "cart_items", "cart_response", "error",
+                    "add_to_cart_response", "carousel_data"), types);
+            // 并行阶段的 get_cart 读到的是加购之前的购物车
+            assertEquals(0, batch.path("responses").get(2).path("items").size());
+
+            // 紧随其后的请求在 batch_response 之后执行，能看到 batch 中的加购
+            JsonNode cart = c.next();
+            assertEquals("cart_items", cart.path("type").asText());
+            assertEquals(1, cart.path("items").size());
+            assertEquals(2, cart.path("items").get(0).path("quantity").asInt());
+        }
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedBatches() throws Exception {
+        try (Connection c = new Connection()) {
+            c.send("{\"type\":\"batch\",\"requests\":[]}");
+            assertEquals(1002, c.next().path("code").asInt());
+            StringBuilder big = new StringBuilder("{\"type\":\"batch\",\"requests\":[");
+            for (int i = 0; i < 33; i++) big.append(i == 0 ? "" : ",").append("{\"type\":\"get_carousel\"}");
+            c.send(big.append("]}").toString());
+            assertEquals(1002, c.next().path("code").asInt());
+        }
+    }
+
+    /** 客户端连接：按到达顺序收集响应 */
+    private static final class Connection implements AutoCloseable {
+        private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        private final Channel channel;
+
+        Connection() throws InterruptedException {
+            channel = new Bootstrap().group(loops).channel(LocalChannel.class)
+                    .handler(new ChannelInitializer<LocalChannel>() {
+                        @Override
+                        protected void initChannel(LocalChannel ch) {
+                            ch.pipeline().addLast(new JsonObjectDecoder(), new StringDecoder(StandardCharsets.UTF_8),
+                                    new SimpleChannelInboundHandler<String>() {
+                                        @Override
+                                        protected void channelRead0(ChannelHandlerContext ctx, String msg) {
+                                            responses.add(msg);
+                                        }
+                                    });
+                        }
+                    }).connect(ADDRESS).sync().channel();
+        }
+
+        void send(String json) {
+            channel.writeAndFlush(ByteBufUtil.writeUtf8(channel.alloc(), json + "\n"));
+        }
+
+        JsonNode next() throws Exception {
+            String msg = responses.poll(5, TimeUnit.SECONDS);
+            assertNotNull(msg, "no response");
+            return MAPPER.readTree(msg);
+        }
+
+        @Override
+        public void close() {
+            channel.close().syncUninterruptibly();
+        }
+    }
+}
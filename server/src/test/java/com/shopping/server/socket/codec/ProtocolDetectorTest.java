@@ -0,0 +1,88 @@
+package com.shopping.server.socket.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProtocolDetectorTest {
+
+    @Test
+    void jsonConnectionSplitsObjectsAcrossReads() {
+        EmbeddedChannel ch = new EmbeddedChannel(new ProtocolDetector());
+        ch.writeInbound(Unpooled.copiedBuffer("{\"type\":\"get_cart\"}{\"type\":", StandardCharsets.UTF_8));
+        ch.writeInbound(Unpooled.copiedBuffer("\"get_carousel\"}\n", StandardCharsets.UTF_8));
+        assertEquals("{\"type\":\"get_cart\"}", ch.readInbound());
+        assertEquals("{\"type\":\"get_carousel\"}", ch.readInbound());
+        assertNull(ch.attr(ProtocolDetector.BINARY).get());
+        assertNull(ch.pipeline().get(ProtocolDetector.class));
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    void binaryHandshakeIsAcknowledgedAndFramesDecode() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(new ProtocolDetector());
+        Map<String, Object> req = new HashMap<>();
+        req.put("type", "set_cart_quantity");
+        req.put("product_id", 1008L);
+        req.put("quantity", 2);
+        ByteBuf frame = BinaryMessageCodec.encodeFrame(UnpooledByteBufAllocator.DEFAULT, req);
+        // 握手与首帧在同一次读取中到达，且首帧被拆成两段
+        ByteBuf first = Unpooled.buffer().writeBytes(ProtocolDetector.MAGIC).writeBytes(frame, 5);
+        ch.writeInbound(first);
+        ch.writeInbound(frame);
+
+        assertTrue(ch.attr(ProtocolDetector.BINARY).get());
+        ByteBuf ack = ch.readOutbound();
+        byte[] ackBytes = new byte[ack.readableBytes()];
+        ack.readBytes(ackBytes);
+        ack.release();
+        assertArrayEquals(ProtocolDetector.MAGIC, ackBytes);
+
+        Map<?, ?> decoded = ch.readInbound();
+        assertEquals("set_cart_quantity", decoded.get("type"));
+        assertEquals(1008, ((Number) decoded.get("product_id")).intValue());
+        assertEquals(2, ((Number) decoded.get("quantity")).intValue());
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    void responsesRoundTripWithTypeIds() throws Exception {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("type", "cart_items");
+        resp.put("items", Arrays.asList(1, 2));
+        ByteBuf frame = BinaryMessageCodec.encodeFrame(UnpooledByteBufAllocator.DEFAULT, resp);
+        assertEquals(frame.readableBytes() - 4, frame.getInt(0));
+        assertEquals(MessageTypes.idOf("cart_items"), frame.getUnsignedShort(4));
+
+        // 已登记的类型不在消息体中重复携带 type，解码时按编号还原
+        EmbeddedChannel ch = new EmbeddedChannel(new BinaryMessageCodec());
+        ch.writeInbound(frame.skipBytes(4));
+        Map<?, ?> decoded = ch.readInbound();
+        assertEquals("cart_items", decoded.get("type"));
+        assertEquals(Arrays.asList(1, 2), decoded.get("items"));
+        ch.finishAndReleaseAll();
+    }
+
+    @Test
+    void unknownHandshakeVersionClosesConnection() {
+        EmbeddedChannel ch = new EmbeddedChannel(new ProtocolDetector());
+        byte[] bad = ProtocolDetector.MAGIC.clone();
+        bad[3] = 99;
+        ch.writeInbound(Unpooled.wrappedBuffer(bad));
+        assertFalse(ch.isOpen());
+        assertNull(ch.readInbound());
+    }
+}